@@ -0,0 +1,80 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.AppApplication;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
+import com.edu.ulab.app.service.impl.BookServiceLocalStorageImpl;
+import com.edu.ulab.app.service.impl.BookServiceTieredImpl;
+import com.edu.ulab.app.service.impl.BookServiceWriteBehindImpl;
+import com.edu.ulab.app.service.impl.UserServiceImpl;
+import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.service.impl.UserServiceLocalStorageImpl;
+import com.edu.ulab.app.service.impl.UserServiceTieredImpl;
+import com.edu.ulab.app.service.impl.UserServiceWriteBehindImpl;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts application context without web server and gives access to service backends by name.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(AppApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.edu.ulab=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    static UserService userService(ApplicationContext context, String backend) {
+        return switch (backend) {
+            case "jpa" -> context.getBean(UserServiceImpl.class);
+            case "template" -> context.getBean(UserServiceImplTemplate.class);
+            case "local" -> context.getBean(UserServiceLocalStorageImpl.class);
+            case "tiered" -> context.getBean(UserServiceTieredImpl.class);
+            case "write-behind" -> context.getBean(UserServiceWriteBehindImpl.class);
+            default -> throw new IllegalArgumentException("Unknown backend " + backend);
+        };
+    }
+
+    static BookService bookService(ApplicationContext context, String backend) {
+        return switch (backend) {
+            case "jpa" -> context.getBean(BookServiceImpl.class);
+            case "template" -> context.getBean(BookServiceImplTemplate.class);
+            case "local" -> context.getBean(BookServiceLocalStorageImpl.class);
+            case "tiered" -> context.getBean(BookServiceTieredImpl.class);
+            case "write-behind" -> context.getBean(BookServiceWriteBehindImpl.class);
+            default -> throw new IllegalArgumentException("Unknown backend " + backend);
+        };
+    }
+
+    static UserDto newUser(long number) {
+        UserDto userDto = new UserDto();
+        userDto.setFullName("user " + number);
+        userDto.setTitle("reader");
+        userDto.setAge((int) (number % 80) + 18);
+        return userDto;
+    }
+
+    static BookDto newBook(Long userId, long number) {
+        BookDto bookDto = new BookDto();
+        bookDto.setUserId(userId);
+        bookDto.setTitle("book " + number);
+        bookDto.setAuthor("author " + number % 1000);
+        bookDto.setPageCount(100 + number % 900);
+        return bookDto;
+    }
+}
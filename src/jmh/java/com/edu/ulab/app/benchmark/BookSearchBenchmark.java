@@ -0,0 +1,93 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.storage.BookSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookSearchIndex with millions of books, titles are three words of a synthetic vocabulary:
+ * lookup of one word, of a word prefix and of two words, and incremental update of one book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int AUTHOR_COUNT = 10_000;
+
+    @Param({"1000000"})
+    public int bookCount;
+
+    @Param({"20"})
+    public int limit;
+
+    private BookSearchIndex searchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        searchIndex = new BookSearchIndex();
+        Random random = new Random(42);
+        for (long id = 1; id <= bookCount; id++) {
+            searchIndex.add(newBook(id, random));
+        }
+    }
+
+    @Benchmark
+    public List<BookSearchIndex.Hit> searchWord() {
+        return searchIndex.search(word(randomWord()), 0, limit);
+    }
+
+    @Benchmark
+    public List<BookSearchIndex.Hit> searchPrefix() {
+        return searchIndex.search(word(randomWord()).substring(0, 4), 0, limit);
+    }
+
+    @Benchmark
+    public List<BookSearchIndex.Hit> searchTwoWords() {
+        return searchIndex.search(word(randomWord()) + " " + word(randomWord()), 0, limit);
+    }
+
+    @Benchmark
+    public void update() {
+        searchIndex.add(newBook(ThreadLocalRandom.current().nextLong(1, bookCount + 1), ThreadLocalRandom.current()));
+    }
+
+    private Book newBook(long id, Random random) {
+        return Book.builder()
+                .id(id)
+                .userId(id / 10 + 1)
+                .title(word(random.nextInt(VOCABULARY_SIZE)) + " " + word(random.nextInt(VOCABULARY_SIZE))
+                        + " " + word(random.nextInt(VOCABULARY_SIZE)))
+                .author("author" + random.nextInt(AUTHOR_COUNT))
+                .pageCount(100 + id % 900)
+                .build();
+    }
+
+    private static int randomWord() {
+        return ThreadLocalRandom.current().nextInt(VOCABULARY_SIZE);
+    }
+
+    /**
+     * Pronounceable word of at least four letters, different numbers give different words.
+     */
+    private static String word(int number) {
+        String consonants = "bcdfghklmnprstvz";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append(consonants.charAt(number % consonants.length()));
+            number /= consonants.length();
+            word.append(vowels.charAt(number % vowels.length()));
+            number /= vowels.length();
+        } while (number > 0 || word.length() < 4);
+        return word.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRUD operations of BookService backends, books are spread over dataSize / 10 users,
+ * which are created first, because BOOK.USER_ID references PERSON.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+    private static final int BOOKS_PER_USER = 10;
+
+    @Param({"jpa", "template", "local", "tiered", "write-behind"})
+    public String backend;
+
+    @Param({"1000", "100000"})
+    public int dataSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private long[] userIds;
+    private long[] bookIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("facade.user-backend=" + backend, "facade.book-backend=" + backend);
+        bookService = BenchmarkContext.bookService(context, backend);
+        UserService userService = BenchmarkContext.userService(context, backend);
+        userIds = new long[dataSize / BOOKS_PER_USER + 1];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = userService.createUser(BenchmarkContext.newUser(i)).getId();
+        }
+        bookIds = new long[dataSize];
+        for (int i = 0; i < dataSize; i++) {
+            bookIds[i] = bookService.createBook(BenchmarkContext.newBook(userIdOf(i), i)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookDto createBook() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return bookService.createBook(BenchmarkContext.newBook(userIdOf(random.nextInt(dataSize)), random.nextLong()));
+    }
+
+    @Benchmark
+    public BookDto getBookById() {
+        return bookService.getBookById(bookIds[ThreadLocalRandom.current().nextInt(dataSize)]);
+    }
+
+    @Benchmark
+    public BookDto updateBook() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(dataSize);
+        BookDto bookDto = BenchmarkContext.newBook(userIdOf(index), random.nextLong());
+        bookDto.setId(bookIds[index]);
+        return bookService.updateBook(bookDto);
+    }
+
+    @Benchmark
+    public void createAndDeleteBook() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BookDto createdBook = bookService.createBook(BenchmarkContext.newBook(userIdOf(random.nextInt(dataSize)), random.nextLong()));
+        bookService.deleteBookById(createdBook.getId());
+    }
+
+    @Benchmark
+    public List<BookDto> findBooksByUserId() {
+        return bookService.findBooksByUserId(userIdOf(ThreadLocalRandom.current().nextInt(dataSize)));
+    }
+
+    private Long userIdOf(int bookIndex) {
+        return userIds[bookIndex / BOOKS_PER_USER];
+    }
+}
@@ -0,0 +1,89 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.storage.BookStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BookStorage backends with one million books: point operations and lookup of user's books
+ * through the userId index compared with filtering of full scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class BookStorageBenchmark {
+    @Param({"CONCURRENT_MAP", "PRIMITIVE", "OFF_HEAP"})
+    public StorageProperties.Backend backend;
+
+    @Param({"1000000"})
+    public int bookCount;
+
+    @Param({"10"})
+    public int booksPerUser;
+
+    private BookStorage bookStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setBackend(backend);
+        AtomicLong ids = new AtomicLong();
+        bookStorage = new BookStorage(storageProperties, ids::incrementAndGet);
+        for (long id = 1; id <= bookCount; id++) {
+            bookStorage.save(newBook(id));
+        }
+    }
+
+    @Benchmark
+    public Book findById() {
+        return bookStorage.findById(randomBookId());
+    }
+
+    @Benchmark
+    public Book save() {
+        return bookStorage.save(newBook(randomBookId()));
+    }
+
+    @Benchmark
+    public List<Book> findAllByUserId() {
+        return bookStorage.findAllByUserId(randomUserId());
+    }
+
+    @Benchmark
+    public List<Book> findAllByUserIdWithScan() {
+        Long userId = randomUserId();
+        try (Stream<Book> books = bookStorage.scan()) {
+            return books.filter(book -> userId.equals(book.getUserId()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Book newBook(long id) {
+        return Book.builder()
+                .id(id)
+                .userId(id / booksPerUser + 1)
+                .title("book " + id)
+                .author("author " + id % 1000)
+                .pageCount(100 + id % 900)
+                .build();
+    }
+
+    private long randomBookId() {
+        return ThreadLocalRandom.current().nextLong(1, bookCount + 1);
+    }
+
+    private Long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, bookCount / booksPerUser + 1);
+    }
+}
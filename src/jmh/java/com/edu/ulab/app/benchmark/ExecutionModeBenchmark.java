@@ -0,0 +1,87 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.config.ExecutionProperties;
+import com.edu.ulab.app.config.RequestExecutors;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of request executors under blocking load.
+ * One operation is a burst of concurrentRequests requests, every request reads a user with JdbcTemplate
+ * and then blocks for latencyMillis, which stands for network latency of a remote database.
+ * Virtual mode falls back to platform threads on a JDK without virtual threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+    private static final int USERS = 1000;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutionProperties.Mode mode;
+
+    @Param({"100", "1000"})
+    public int concurrentRequests;
+
+    @Param({"5"})
+    public int latencyMillis;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService executor;
+    private UserService userService;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        userService = BenchmarkContext.userService(context, "template");
+        userIds = new long[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = userService.createUser(BenchmarkContext.newUser(i)).getId();
+        }
+        ExecutionProperties executionProperties = new ExecutionProperties();
+        executionProperties.setMode(mode);
+        executionProperties.setPlatformThreads(context.getBean(ExecutionProperties.class).getPlatformThreads());
+        executionProperties.setQueueCapacity(concurrentRequests);
+        executor = RequestExecutors.create(executionProperties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserDto> blockingRequests() throws InterruptedException, ExecutionException {
+        List<Callable<UserDto>> requests = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            requests.add(this::blockingRequest);
+        }
+        List<UserDto> users = new ArrayList<>(concurrentRequests);
+        for (Future<UserDto> response : executor.invokeAll(requests)) {
+            users.add(response.get());
+        }
+        return users;
+    }
+
+    private UserDto blockingRequest() throws InterruptedException {
+        UserDto userDto = userService.getUserById(userIds[ThreadLocalRandom.current().nextInt(USERS)]);
+        Thread.sleep(latencyMillis);
+        return userDto;
+    }
+}
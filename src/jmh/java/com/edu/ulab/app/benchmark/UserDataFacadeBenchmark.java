@@ -0,0 +1,102 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Composite operations of UserDataFacade with its configured backends.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDataFacadeBenchmark {
+    @Param({"1000", "10000"})
+    public int dataSize;
+
+    @Param({"1", "10", "100"})
+    public int booksPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserDataFacade userDataFacade;
+    private UserBookResponse[] users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        userDataFacade = context.getBean(UserDataFacade.class);
+        users = new UserBookResponse[dataSize];
+        for (int i = 0; i < dataSize; i++) {
+            users[i] = userDataFacade.createUserWithBooks(newRequest(null, List.of()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks() {
+        return userDataFacade.createUserWithBooks(newRequest(null, List.of()));
+    }
+
+    @Benchmark
+    public UserBookResponse getUserWithBooks() {
+        Long userId = randomUser().getUserId();
+        return userDataFacade.getUserWithBooks(userId, userDataFacade.getUserWithBooksTag(userId));
+    }
+
+    @Benchmark
+    public UserBookResponse updateUserWithBooks() {
+        UserBookResponse user = randomUser();
+        return userDataFacade.updateUserWithBooks(newRequest(user.getUserId(), user.getBooksIdList()));
+    }
+
+    @Benchmark
+    public void createAndDeleteUserWithBooks() {
+        UserBookResponse createdUser = userDataFacade.createUserWithBooks(newRequest(null, List.of()));
+        userDataFacade.deleteUserWithBooks(createdUser.getUserId());
+    }
+
+    private UserBookResponse randomUser() {
+        return users[ThreadLocalRandom.current().nextInt(users.length)];
+    }
+
+    /**
+     * @param bookIds ids of books to update, new books are requested if it is empty.
+     */
+    private UserBookRequest newRequest(Long userId, List<Long> bookIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UserRequest userRequest = new UserRequest();
+        userRequest.setId(userId);
+        userRequest.setFullName("user " + random.nextInt());
+        userRequest.setTitle("reader");
+        userRequest.setAge(18 + random.nextInt(60));
+        List<BookRequest> bookRequests = new ArrayList<>(booksPerUser);
+        for (int i = 0; i < booksPerUser; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setId(bookIds.isEmpty() ? null : bookIds.get(i % bookIds.size()));
+            bookRequest.setTitle("book " + random.nextInt());
+            bookRequest.setAuthor("author " + random.nextInt(1000));
+            bookRequest.setPageCount(100 + random.nextInt(900));
+            bookRequests.add(bookRequest);
+        }
+        UserBookRequest request = new UserBookRequest();
+        request.setUserRequest(userRequest);
+        request.setBookRequests(bookRequests);
+        return request;
+    }
+}
@@ -0,0 +1,72 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRUD operations of UserService backends.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+    @Param({"jpa", "template", "local", "tiered", "write-behind"})
+    public String backend;
+
+    @Param({"1000", "100000"})
+    public int dataSize;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("facade.user-backend=" + backend, "facade.book-backend=" + backend);
+        userService = BenchmarkContext.userService(context, backend);
+        userIds = new long[dataSize];
+        for (int i = 0; i < dataSize; i++) {
+            userIds[i] = userService.createUser(BenchmarkContext.newUser(i)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDto createUser() {
+        return userService.createUser(BenchmarkContext.newUser(ThreadLocalRandom.current().nextLong()));
+    }
+
+    @Benchmark
+    public UserDto getUserById() {
+        return userService.getUserById(randomUserId());
+    }
+
+    @Benchmark
+    public UserDto updateUser() {
+        UserDto userDto = BenchmarkContext.newUser(ThreadLocalRandom.current().nextLong());
+        userDto.setId(randomUserId());
+        return userService.updateUser(userDto);
+    }
+
+    @Benchmark
+    public void createAndDeleteUser() {
+        UserDto createdUser = userService.createUser(BenchmarkContext.newUser(ThreadLocalRandom.current().nextLong()));
+        userService.deleteUserById(createdUser.getId());
+    }
+
+    private long randomUserId() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+}
@@ -0,0 +1,117 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Serialization of UserBookRequest and UserBookResponse with JSON, CBOR and Smile.
+ * Every format is checked by round trip of both payloads before measurement,
+ * encoded sizes are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+    @Param({"JSON", "CBOR", "SMILE"})
+    public String format;
+
+    @Param({"10", "10000"})
+    public int bookCount;
+
+    private UserBookRequest request;
+    private UserBookResponse response;
+    private ObjectWriter requestWriter;
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private ObjectReader responseReader;
+    private byte[] encodedRequest;
+    private byte[] encodedResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = switch (format) {
+            case "JSON" -> new ObjectMapper();
+            case "CBOR" -> new CBORMapper();
+            case "SMILE" -> new SmileMapper();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        request = newRequest();
+        response = UserBookResponse.builder()
+                .userId(5050L)
+                .booksIdList(LongStream.range(5050, 5050 + bookCount).boxed().toList())
+                .build();
+        requestWriter = objectMapper.writerFor(UserBookRequest.class);
+        requestReader = objectMapper.readerFor(UserBookRequest.class);
+        responseWriter = objectMapper.writerFor(UserBookResponse.class);
+        responseReader = objectMapper.readerFor(UserBookResponse.class);
+        encodedRequest = requestWriter.writeValueAsBytes(request);
+        encodedResponse = responseWriter.writeValueAsBytes(response);
+        checkRoundTrip(request, requestReader.readValue(encodedRequest));
+        checkRoundTrip(response, responseReader.readValue(encodedResponse));
+        System.out.printf("%n%s: request %d bytes, response %d bytes%n",
+                format, encodedRequest.length, encodedResponse.length);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws IOException {
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public UserBookRequest readRequest() throws IOException {
+        return requestReader.readValue(encodedRequest);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return responseWriter.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public UserBookResponse readResponse() throws IOException {
+        return responseReader.readValue(encodedResponse);
+    }
+
+    private UserBookRequest newRequest() {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("Test User");
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+        List<BookRequest> bookRequests = LongStream.range(0, bookCount)
+                .mapToObj(i -> {
+                    BookRequest bookRequest = new BookRequest();
+                    bookRequest.setId(5050 + i);
+                    bookRequest.setTitle("book " + i);
+                    bookRequest.setAuthor("author " + i % 100);
+                    bookRequest.setPageCount(100 + i % 900);
+                    return bookRequest;
+                })
+                .toList();
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+
+    private void checkRoundTrip(Object written, Object read) {
+        if (!written.equals(read)) {
+            throw new IllegalStateException(format + " round trip changed " + written.getClass().getSimpleName());
+        }
+    }
+}
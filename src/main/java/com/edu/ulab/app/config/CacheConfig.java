@@ -0,0 +1,31 @@
+package com.edu.ulab.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine caches of the app.
+ * Entries are not evicted on writes: keys include version of cached data, so changed data gets a new key
+ * and older entries are dropped by size and expiry. A put which lands after a concurrent write
+ * is therefore never served, however late it comes.
+ * Statistics are recorded and published by actuator as cache.gets, cache.puts and cache.evictions.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String USER_WITH_BOOKS = "userWithBooks";
+
+    @Value("${cache.user-with-books.spec}")
+    private String userWithBooksSpec;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(USER_WITH_BOOKS);
+        cacheManager.setCacheSpecification(userWithBooksSpec);
+        return cacheManager;
+    }
+}
@@ -0,0 +1,31 @@
+package com.edu.ulab.app.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Tomcat runs request handling, and so UserDataFacade transactions, on the request executor.
+ * The executor is not a bean, so it doesn't replace applicationTaskExecutor of Spring Boot.
+ */
+@Configuration
+public class ExecutionConfig implements DisposableBean {
+    private final ExecutorService requestExecutor;
+
+    public ExecutionConfig(ExecutionProperties executionProperties) {
+        this.requestExecutor = RequestExecutors.create(executionProperties);
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> requestExecutorCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        requestExecutor.shutdown();
+    }
+}
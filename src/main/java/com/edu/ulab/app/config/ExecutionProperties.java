@@ -0,0 +1,39 @@
+package com.edu.ulab.app.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of request execution, bound from "execution" section of application.yaml.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionProperties {
+    /**
+     * Threads which run request handling.
+     */
+    private Mode mode = Mode.PLATFORM;
+    /**
+     * Size of platform pool, it is used in PLATFORM mode and when virtual threads are not supported.
+     * It should match JDBC pool size, because every request blocks on a connection.
+     */
+    private int platformThreads = 50;
+    /**
+     * Requests which wait for a free platform thread, requests above it are rejected.
+     */
+    private int queueCapacity = 1000;
+
+    public enum Mode {
+        /**
+         * Bounded pool of platform threads.
+         */
+        PLATFORM,
+        /**
+         * New virtual thread per request, concurrency is bounded by JDBC pool only.
+         * Falls back to PLATFORM on a JDK without virtual threads.
+         */
+        VIRTUAL
+    }
+}
@@ -0,0 +1,95 @@
+package com.edu.ulab.app.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+
+/**
+ * Service backends of UserDataFacade, bound from "facade" section of application.yaml.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "facade")
+public class FacadeProperties {
+    /**
+     * Backend of UserService.
+     */
+    private Backend userBackend = Backend.TEMPLATE;
+    /**
+     * Backend of BookService.
+     */
+    private Backend bookBackend = Backend.JPA;
+    /**
+     * Database backend behind TIERED one, JPA or TEMPLATE.
+     */
+    private Backend tieredSystemOfRecord = Backend.JPA;
+    /**
+     * Count of book ids in a page of user's books, when request doesn't set limit.
+     */
+    private int booksPageSize = 1000;
+    /**
+     * Max count of book ids in a page of user's books.
+     */
+    private int maxBooksPageSize = 10_000;
+    /**
+     * Max count of users, whose versions are kept for ETags and cached responses.
+     */
+    private int maxTrackedUsers = 100_000;
+    /**
+     * Max offset of a page of search results, deeper pages would rank too many books.
+     */
+    private int maxSearchOffset = 10_000;
+
+    /**
+     * @param services services of one entity by bean name.
+     * @param entity is "user" or "book".
+     * @return service of the system of record of tiered backend.
+     * @throws IllegalStateException if system of record is not a database backend.
+     */
+    public <S> S tieredSystemOfRecord(Map<String, S> services, String entity) {
+        if (tieredSystemOfRecord != Backend.JPA && tieredSystemOfRecord != Backend.TEMPLATE) {
+            throw new IllegalStateException("System of record of tiered backend must be jpa or template, not "
+                    + tieredSystemOfRecord);
+        }
+        return services.get(tieredSystemOfRecord.beanName(entity));
+    }
+
+    public enum Backend {
+        /**
+         * Spring Data JPA repositories.
+         */
+        JPA("ServiceImpl"),
+        /**
+         * JdbcTemplate.
+         */
+        TEMPLATE("ServiceImplTemplate"),
+        /**
+         * Local storage only, nothing is written to database.
+         */
+        LOCAL("ServiceLocalStorageImpl"),
+        /**
+         * Local storage as hot tier in front of JPA or template backend.
+         */
+        TIERED("ServiceTieredImpl"),
+        /**
+         * Local storage acknowledges writes, database is written in background batches.
+         */
+        WRITE_BEHIND("ServiceWriteBehindImpl");
+
+        private final String beanNameSuffix;
+
+        Backend(String beanNameSuffix) {
+            this.beanNameSuffix = beanNameSuffix;
+        }
+
+        /**
+         * @param entity is "user" or "book".
+         * @return name of service bean of this backend.
+         */
+        public String beanName(String entity) {
+            return entity + beanNameSuffix;
+        }
+    }
+}
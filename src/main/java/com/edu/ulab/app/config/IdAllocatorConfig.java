@@ -0,0 +1,27 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.repository.IdAllocator;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Id allocators shared by JdbcTemplate services and local storage.
+ * They use the same sequences as Hibernate, so ids are unique across all backends.
+ */
+@Configuration
+public class IdAllocatorConfig {
+    public static final String PERSON_ID_ALLOCATOR = "personIdAllocator";
+    public static final String BOOK_ID_ALLOCATOR = "bookIdAllocator";
+
+    @Bean(PERSON_ID_ALLOCATOR)
+    public IdAllocator personIdAllocator(JdbcTemplate jdbcTemplate) {
+        return new SequenceIdAllocator(jdbcTemplate, "PERSON_SEQ");
+    }
+
+    @Bean(BOOK_ID_ALLOCATOR)
+    public IdAllocator bookIdAllocator(JdbcTemplate jdbcTemplate) {
+        return new SequenceIdAllocator(jdbcTemplate, "BOOK_SEQ");
+    }
+}
@@ -0,0 +1,57 @@
+package com.edu.ulab.app.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates executors for request handling according to ExecutionProperties.
+ * Virtual threads are looked up reflectively, so the app is still built for Java 17
+ * and uses them when it runs on a JDK which has them.
+ */
+@Slf4j
+public final class RequestExecutors {
+
+    private RequestExecutors() {
+    }
+
+    public static ExecutorService create(ExecutionProperties properties) {
+        if (properties.getMode() == ExecutionProperties.Mode.VIRTUAL) {
+            ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+            if (virtualThreads != null) {
+                log.info("Requests are executed on virtual threads");
+                return virtualThreads;
+            }
+            log.warn("Virtual threads are not supported by this JDK, falling back to platform threads");
+        }
+        log.info("Requests are executed on {} platform threads", properties.getPlatformThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                properties.getPlatformThreads(), properties.getPlatformThreads(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("request-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor() or null if it isn't available.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException exc) {
+            return null;
+        } catch (InvocationTargetException exc) {
+            // preview feature which is not enabled
+            log.debug("Can't create virtual thread executor", exc.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.edu.ulab.app.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of local storage, bound from "storage" section of application.yaml.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "storage")
+public class StorageProperties {
+    /**
+     * Structure which keeps entities of local storage.
+     */
+    private Backend backend = Backend.CONCURRENT_MAP;
+    /**
+     * Size of one direct buffer of OFF_HEAP backend.
+     */
+    private DataSize offHeapChunkSize = DataSize.ofMegabytes(64);
+    /**
+     * Write-ahead log and snapshots of local storage.
+     */
+    private final Journal journal = new Journal();
+    /**
+     * Hot tier settings, used when local storage caches database.
+     */
+    private final Tier tier = new Tier();
+    /**
+     * Write-behind settings, used when local storage buffers writes to database.
+     */
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    public enum Backend {
+        /**
+         * ConcurrentHashMap with boxed keys.
+         */
+        CONCURRENT_MAP,
+        /**
+         * Open addressing map with primitive long keys.
+         */
+        PRIMITIVE,
+        /**
+         * Serialized entities in direct byte buffers, primitive index on heap.
+         */
+        OFF_HEAP
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        /**
+         * If false, local storage is kept only in memory.
+         */
+        private boolean enabled = false;
+        /**
+         * Directory for log segments and snapshots.
+         */
+        private Path directory = Path.of("data");
+        /**
+         * Size of one memory-mapped log segment.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /**
+         * How often storage is written to snapshot and old log segments are deleted.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class WriteBehind {
+        /**
+         * Max count of mutations, which are acknowledged but not flushed yet.
+         */
+        private int queueCapacity = 10_000;
+        /**
+         * How long a write waits for free place in full queue before it is rejected.
+         */
+        private Duration enqueueTimeout = Duration.ofSeconds(1);
+        /**
+         * Max count of mutations flushed in one transaction.
+         */
+        private int batchSize = 500;
+        /**
+         * How long flusher waits for the first mutation of a batch.
+         */
+        private Duration flushInterval = Duration.ofMillis(100);
+        /**
+         * Pause before failed batch is flushed again.
+         */
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        /**
+         * How many times failed batch is flushed before its rows are written one by one and failing ones are dropped.
+         */
+        private int maxRetries = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Tier {
+        /**
+         * Max count of entities of one storage kept in hot tier.
+         */
+        private int maxEntries = 100_000;
+        /**
+         * When entity read from database is put into hot tier.
+         */
+        private Admission admission = Admission.ALWAYS;
+        /**
+         * Which entity leaves hot tier when it is full.
+         */
+        private Eviction eviction = Eviction.LRU;
+
+        public enum Admission {
+            /**
+             * Every entity read or written is admitted.
+             */
+            ALWAYS,
+            /**
+             * Entity is admitted on second access, so one-off reads don't push hot entities out.
+             */
+            SECOND_HIT
+        }
+
+        public enum Eviction {
+            /**
+             * Least recently used entity is evicted.
+             */
+            LRU,
+            /**
+             * Entity admitted first is evicted.
+             */
+            FIFO
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.edu.ulab.app.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class UserWithBookIdsDto {
+    private Long id;
+    private String fullName;
+    private String title;
+    private int age;
+    private List<Long> booksIdList = new ArrayList<>();
+}
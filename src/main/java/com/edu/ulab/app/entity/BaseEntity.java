@@ -1,20 +1,43 @@
 package com.edu.ulab.app.entity;
 
+import com.edu.ulab.app.repository.IdAllocator;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 import java.io.Serializable;
 
+/**
+ * Ids are taken from ENTITY_SEQ sequence of every entity with pooled optimizer,
+ * so Hibernate can batch inserts.
+ * Version is checked and incremented on every update, so concurrent updates fail instead of locking rows.
+ */
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 @MappedSuperclass
 public class BaseEntity implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pooled_sequence")
+    @GenericGenerator(name = "pooled_sequence",
+            strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + IdAllocator.ALLOCATION_SIZE),
+                    @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled")
+            })
     private Long id;
+
+    @Version
+    private Long version;
+
+    public BaseEntity(Long id) {
+        this.id = id;
+    }
 }
@@ -0,0 +1,7 @@
+package com.edu.ulab.app.exception;
+
+public class BackpressureException extends RuntimeException {
+    public BackpressureException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.edu.ulab.app.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.edu.ulab.app.exception;
+
+public class InvalidOffsetException extends RuntimeException {
+    public InvalidOffsetException(String message) {
+        super(message);
+    }
+}
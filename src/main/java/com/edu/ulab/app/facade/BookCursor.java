@@ -0,0 +1,41 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.exception.InvalidCursorException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque cursor of a page of user's books, it wraps id of the last book of previous page.
+ */
+final class BookCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private BookCursor() {
+    }
+
+    static String encode(long lastBookId) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(lastBookId).array());
+    }
+
+    /**
+     * @param cursor cursor from previous response or null for the first page.
+     * @return id after which the page starts, 0 for the first page.
+     * @throws InvalidCursorException if cursor wasn't made by encode.
+     */
+    static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            byte[] bytes = DECODER.decode(cursor);
+            if (bytes.length == Long.BYTES) {
+                return ByteBuffer.wrap(bytes).getLong();
+            }
+        } catch (IllegalArgumentException ignored) {
+            // reported below
+        }
+        throw new InvalidCursorException("Invalid books cursor: " + cursor);
+    }
+}
@@ -1,46 +1,75 @@
 package com.edu.ulab.app.facade;
 
+import com.edu.ulab.app.config.CacheConfig;
+import com.edu.ulab.app.config.FacadeProperties;
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBookIdsDto;
+import com.edu.ulab.app.exception.InvalidCursorException;
+import com.edu.ulab.app.exception.InvalidOffsetException;
 import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.repository.UserExportRepository;
+import com.edu.ulab.app.retry.RetryOnConflict;
 import com.edu.ulab.app.service.BookService;
 import com.edu.ulab.app.service.UserService;
-import com.edu.ulab.app.service.impl.BookServiceImpl;
-import com.edu.ulab.app.service.impl.UserServiceImpl;
-import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.BookSearchResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
- * Component which provide an abstraction above Service layer
+ * Component which provide an abstraction above Service layer.
+ * Responses of getUserWithBooks are cached by userId and user's version tag.
+ * Every method which changes user or his books bumps the version, so older responses become unreachable
+ * and expire from the cache, even if they were put after the change was committed.
+ * Updated books keep their owners, so owners of books, which are not updated user's ones, are bumped too.
+ * Ids of user's books are returned by pages with keyset cursors, so response size doesn't depend on books count.
+ * The version tag is also used as ETag of reads.
  */
 @Slf4j
 @Component
 public class UserDataFacade {
-    private final UserServiceImplTemplate userService;
-    private final BookServiceImpl bookService;
+    private final UserService userService;
+    private final BookService bookService;
     private final UserMapper userMapper;
     private final BookMapper bookMapper;
+    private final UserExportRepository userExportRepository;
+    private final UserVersions userVersions;
+    private final int booksPageSize;
+    private final int maxBooksPageSize;
+    private final int maxSearchOffset;
 
-    public UserDataFacade(UserServiceImplTemplate userService,
-                          BookServiceImpl bookService,
+    public UserDataFacade(Map<String, UserService> userServices,
+                          Map<String, BookService> bookServices,
+                          FacadeProperties facadeProperties,
                           UserMapper userMapper,
-                          BookMapper bookMapper) {
-        this.userService = userService;
-        this.bookService = bookService;
+                          BookMapper bookMapper,
+                          UserExportRepository userExportRepository,
+                          UserVersions userVersions) {
+        this.userService = userServices.get(facadeProperties.getUserBackend().beanName("user"));
+        this.bookService = bookServices.get(facadeProperties.getBookBackend().beanName("book"));
+        log.info("Facade uses {} users and {} books",
+                facadeProperties.getUserBackend(), facadeProperties.getBookBackend());
         this.userMapper = userMapper;
         this.bookMapper = bookMapper;
+        this.userExportRepository = userExportRepository;
+        this.userVersions = userVersions;
+        this.booksPageSize = facadeProperties.getBooksPageSize();
+        this.maxBooksPageSize = facadeProperties.getMaxBooksPageSize();
+        this.maxSearchOffset = facadeProperties.getMaxSearchOffset();
     }
 
     /**
@@ -51,58 +80,119 @@ public class UserDataFacade {
      */
     @Transactional
     public UserBookResponse createUserWithBooks(UserBookRequest userBookRequest) {
-        log.info("Got user book create request: {}", userBookRequest);
+        log.debug("Got user book create request: {}", userBookRequest);
         UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Mapped user request: {}", userDto);
+        log.debug("Mapped user request: {}", userDto);
 
         UserDto createdUser = userService.createUser(userDto);
-        log.info("Created user: {}", createdUser);
+        log.debug("Created user: {}", createdUser);
+        userVersions.bumpAfterCompletion(createdUser.getId());
 
-        List<Long> bookIdList = Optional.ofNullable(userBookRequest.getBookRequests())
+        List<BookDto> bookDtoList = Optional.ofNullable(userBookRequest.getBookRequests())
                 .orElseThrow(() -> new NullArgumentException("List of books can't be null"))
                 .stream()
                 .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
                 .peek(bookDto -> bookDto.setUserId(createdUser.getId()))
-                .peek(mappedBookDto -> log.info("mapped book: {}", mappedBookDto))
-                .map(bookService::createBook)
-                .peek(createdBook -> log.info("Created book: {}", createdBook))
+                .peek(mappedBookDto -> log.debug("mapped book: {}", mappedBookDto))
+                .toList();
+        List<Long> bookIdList = bookService.createBooks(bookDtoList)
+                .stream()
+                .peek(createdBook -> log.debug("Created book: {}", createdBook))
                 .map(BookDto::getId)
                 .toList();
-        log.info("Collected book ids: {}", bookIdList);
+        log.debug("Collected book ids: {}", bookIdList);
 
         return UserBookResponse.builder()
                 .userId(createdUser.getId())
                 .booksIdList(bookIdList)
                 .build();
     }
+    /**
+     * Create chunk of users with their books in one transaction.
+     * Users are inserted with one batch and then books of all users with one batch.
+     * @param userBookRequests are users data and lists of their books, lists of books can't be null.
+     * @return UserBookResponses in the same order as requests.
+     */
+    @Transactional
+    public List<UserBookResponse> createUsersWithBooks(List<UserBookRequest> userBookRequests) {
+        log.debug("Got {} user book create requests", userBookRequests.size());
+        List<UserDto> userDtoList = userBookRequests.stream()
+                .map(UserBookRequest::getUserRequest)
+                .map(userMapper::userRequestToUserDto)
+                .toList();
+        List<UserDto> createdUsers = userService.createUsers(userDtoList);
+        log.debug("Created {} users", createdUsers.size());
+        createdUsers.forEach(createdUser -> userVersions.bumpAfterCompletion(createdUser.getId()));
+
+        List<BookDto> bookDtoList = new ArrayList<>();
+        int[] bookCounts = new int[userBookRequests.size()];
+        for (int i = 0; i < userBookRequests.size(); i++) {
+            Long userId = createdUsers.get(i).getId();
+            List<BookDto> userBooks = Optional.ofNullable(userBookRequests.get(i).getBookRequests())
+                    .orElseThrow(() -> new NullArgumentException("List of books can't be null"))
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .map(bookMapper::bookRequestToBookDto)
+                    .peek(bookDto -> bookDto.setUserId(userId))
+                    .toList();
+            bookCounts[i] = userBooks.size();
+            bookDtoList.addAll(userBooks);
+        }
+        List<BookDto> createdBooks = bookService.createBooks(bookDtoList);
+        log.debug("Created {} books", createdBooks.size());
+
+        List<UserBookResponse> responses = new ArrayList<>(userBookRequests.size());
+        int from = 0;
+        for (int i = 0; i < userBookRequests.size(); i++) {
+            responses.add(UserBookResponse.builder()
+                    .userId(createdUsers.get(i).getId())
+                    .booksIdList(createdBooks.subList(from, from + bookCounts[i]).stream()
+                            .map(BookDto::getId)
+                            .toList())
+                    .build());
+            from += bookCounts[i];
+        }
+        return responses;
+    }
+
     /**
      * Update user and books if they are in request.
+     * Rows are not locked, the whole transaction is retried if user or books were updated concurrently.
      * @param userBookRequest is User data and list of books for this user.
      * @return UserBookResponse which has user id and ids of updated books.
      * @throws NullArgumentException if received List of Books is null.
      */
+    @RetryOnConflict
     @Transactional
     public UserBookResponse updateUserWithBooks(UserBookRequest userBookRequest) {
-        log.info("Got user book update request {}", userBookRequest);
+        log.debug("Got user book update request {}", userBookRequest);
         UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Mapped user request: {}", userDto);
+        log.debug("Mapped user request: {}", userDto);
 
         UserDto updatedUser = userService.updateUser(userDto);
-        log.info("Updated user {}", updatedUser);
+        log.debug("Updated user {}", updatedUser);
+        userVersions.bumpAfterCompletion(updatedUser.getId());
 
-        List<Long> bookIdList = Optional.ofNullable(userBookRequest.getBookRequests())
+        List<BookDto> bookDtoList = Optional.ofNullable(userBookRequest.getBookRequests())
                 .orElseThrow(() -> new NullArgumentException("List of books can't be null"))
                 .stream()
                 .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
                 .peek(mappedBookDto -> mappedBookDto.setUserId(updatedUser.getId()))
-                .peek(mappedBookDto -> log.info("mapped book {}", mappedBookDto))
-                .map(bookService::updateBook)
-                .peek(updatedBook -> log.info("Updated book {}", updatedBook))
+                .peek(mappedBookDto -> log.debug("mapped book {}", mappedBookDto))
+                .toList();
+        List<BookDto> updatedBooks = bookService.updateBooks(bookDtoList);
+        updatedBooks.stream()
+                .map(BookDto::getUserId)
+                .filter(ownerId -> !ownerId.equals(updatedUser.getId()))
+                .distinct()
+                .forEach(userVersions::bumpAfterCompletion);
+        List<Long> bookIdList = updatedBooks.stream()
+                .peek(updatedBook -> log.debug("Updated book {}", updatedBook))
                 .map(BookDto::getId)
                 .toList();
-        log.info("Collected updated book ids: {}", bookIdList);
+        log.debug("Collected updated book ids: {}", bookIdList);
         return UserBookResponse.builder()
                 .userId(updatedUser.getId())
                 .booksIdList(bookIdList)
@@ -110,41 +200,120 @@ public class UserDataFacade {
     }
 
     /**
-     * Get user and books by userId.
+     * Get user and the first page of his books by userId, page has default size.
+     * Tag is taken before user is read, so cached response is never older than the tag it is cached with.
      * @param userId is id of user we are looking for.
-     * @return UserBookResponse which has user id and list of ids of his books.
+     * @param tag is current tag of user from getUserWithBooksTag.
+     * @return UserBookResponse which has user id, page of ids of his books and cursor of the next page.
      */
     @Transactional
-    public UserBookResponse getUserWithBooks(Long userId) {
-        log.info("Got user with id={} to find", userId);
+    @Cacheable(cacheNames = CacheConfig.USER_WITH_BOOKS, key = "#userId + '/' + #tag")
+    public UserBookResponse getUserWithBooks(Long userId, String tag) {
+        return findUserWithBooks(userId, 0, booksPageSize);
+    }
+
+    /**
+     * Get user and a page of his books by userId, pages are not cached.
+     * @param userId is id of user we are looking for.
+     * @param booksCursor nextBooksCursor of previous page or null for the first page.
+     * @param limit max count of book ids, default page size if null, it is capped by max page size.
+     * @return UserBookResponse which has user id, page of ids of his books and cursor of the next page.
+     * @throws InvalidCursorException if cursor is malformed.
+     */
+    @Transactional(readOnly = true)
+    public UserBookResponse getUserWithBooks(Long userId, String booksCursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? booksPageSize : Math.min(limit, maxBooksPageSize);
+        return findUserWithBooks(userId, BookCursor.decode(booksCursor), pageSize);
+    }
+
+    /**
+     * Tag of current version of user and his books, it is read from memory.
+     * User, who is not tracked yet, is read once to check that he exists, so unknown users never get a tag.
+     * Caller must take it before reading user, so the tag is never newer than the data.
+     * @param userId is id of user.
+     * @return tag, which changes after every change of user or his books.
+     * @throws NotFoundException if user doesn't exist.
+     */
+    public String getUserWithBooksTag(Long userId) {
+        String tag = userVersions.tagOf(userId);
+        if (tag == null) {
+            userService.getUserById(userId);
+            tag = userVersions.track(userId);
+        }
+        return tag;
+    }
+
+    /**
+     * Search books by title and author with the index of book backend.
+     * @param query terms, every one must match a word or start of a word.
+     * @param offset count of best matches to skip, from 0 to max search offset.
+     * @param limit max count of books, default page size if null, it is capped by max page size.
+     * @return page of books, best first, and offset of the next page.
+     * @throws InvalidOffsetException if offset is negative or greater than max search offset.
+     */
+    @Transactional(readOnly = true)
+    public BookSearchResponse searchBooks(String query, int offset, Integer limit) {
+        if (offset < 0 || offset > maxSearchOffset) {
+            throw new InvalidOffsetException("Offset must be from 0 to " + maxSearchOffset + ", but it is " + offset);
+        }
+        int pageSize = limit == null || limit <= 0 ? booksPageSize : Math.min(limit, maxBooksPageSize);
+        List<BookDto> books = bookService.searchBooks(query, offset, pageSize + 1);
+        Integer nextOffset = null;
+        if (books.size() > pageSize) {
+            books = books.subList(0, pageSize);
+            nextOffset = offset + pageSize;
+        }
+        return BookSearchResponse.builder()
+                .books(List.copyOf(books))
+                .nextOffset(nextOffset)
+                .build();
+    }
+
+    /**
+     * One id more than page size is read to find out if the next page exists.
+     */
+    private UserBookResponse findUserWithBooks(Long userId, long afterBookId, int pageSize) {
+        log.debug("Got user with id={} to find, books after id={}", userId, afterBookId);
         UserDto userDto = userService.getUserById(userId);
-        log.info("Got userDto {} with user id={}", userDto, userId);
-        List<Long> bookIdList = bookService.findBooksByUserId(userId)
-                .stream()
-                .filter(Objects::nonNull)
-                .peek(bookDto -> log.info("Found bookDto {} with userId={}", bookDto, userId))
-                .map(BookDto::getId)
-                .collect(Collectors.toList());
-        log.info("Collected found book ids: {}", bookIdList);
+        log.debug("Got userDto {} with user id={}", userDto, userId);
+        List<Long> bookIdList = bookService.findBookIdsByUserId(userId, afterBookId, pageSize + 1);
+        String nextBooksCursor = null;
+        if (bookIdList.size() > pageSize) {
+            bookIdList = bookIdList.subList(0, pageSize);
+            nextBooksCursor = BookCursor.encode(bookIdList.get(pageSize - 1));
+        }
+        log.debug("Collected {} found book ids, next cursor {}", bookIdList.size(), nextBooksCursor);
         return UserBookResponse.builder()
                 .userId(userDto.getId())
-                .booksIdList(bookIdList)
+                .booksIdList(List.copyOf(bookIdList))
+                .nextBooksCursor(nextBooksCursor)
                 .build();
     }
+    /**
+     * Export all users with ids of their books, one by one in order of user id.
+     * @param consumer receives users, it is called while database cursor is open.
+     * @return count of exported users.
+     */
+    @Transactional(readOnly = true)
+    public long exportUsersWithBooks(Consumer<UserWithBookIdsDto> consumer) {
+        log.debug("Got export request");
+        return userExportRepository.forEachUserWithBookIds(consumer);
+    }
+
     /**
      * Delete user from storage and his books.
+     * Books are deleted with one statement by user id, so round trips don't depend on books count.
      * @param userId is id of user we want to delete.
+     * @return count of deleted rows, user and his books.
      */
     @Transactional
-    public void deleteUserWithBooks(Long userId) {
-        log.info("Got user with id={} to delete", userId);
-        bookService.findBooksByUserId(userId)
-                .stream()
-                .filter(Objects::nonNull)
-                .peek(bookDto -> log.info("Found bookDto to delete {}", bookDto))
-                .forEach(bookDto -> bookService.deleteBookById(bookDto.getId()));
+    public int deleteUserWithBooks(Long userId) {
+        log.debug("Got user with id={} to delete", userId);
+        userVersions.dropAfterCompletion(userId);
+        int deletedBooks = bookService.deleteBooksByUserId(userId);
+        log.debug("Deleted {} books of user with id={}", deletedBooks, userId);
         userService.deleteUserById(userId);
-        log.info("User with id: {} has been deleted", userId);
-
+        log.debug("User with id: {} has been deleted", userId);
+        return deletedBooks + 1;
     }
 }
@@ -0,0 +1,99 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserVersions keeps versions of users, which are tracked by this instance.
+ * Version changes after every change of user or his books made through UserDataFacade,
+ * it is changed when transaction is completed, which is after the change is committed,
+ * so a reader who takes version before data never gets data older than the version.
+ * Cached responses are keyed by the tag, so a new version makes older ones unreachable.
+ * Every version is taken from one sequence, so a version is never given twice and a user,
+ * who is tracked again after he was dropped, never gets a tag which clients have seen.
+ * Deleted users are dropped, and when more than facade.max-tracked-users are tracked, half of them are dropped.
+ * Versions live in memory, so tag includes start time of the instance to differ from tags of previous runs.
+ */
+@Component
+public class UserVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final int maxTrackedUsers;
+
+    public UserVersions(FacadeProperties facadeProperties) {
+        this.maxTrackedUsers = facadeProperties.getMaxTrackedUsers();
+    }
+
+    /**
+     * @return tag of current version of user or null if user is not tracked, then caller checks that he exists
+     * and starts tracking him.
+     */
+    public String tagOf(Long userId) {
+        Long version = versions.get(userId);
+        return version == null ? null : tag(version);
+    }
+
+    /**
+     * Track user, who is known to exist. If he is not tracked yet, he gets a new version.
+     * @return tag of current version of user.
+     */
+    String track(Long userId) {
+        Long version = versions.computeIfAbsent(userId, id -> sequence.incrementAndGet());
+        dropIfFull();
+        return tag(version);
+    }
+
+    /**
+     * Give user a new version after current transaction, or right away if there is no transaction.
+     * Rolled back transaction changes it too, that only makes clients read unchanged data once more.
+     */
+    void bumpAfterCompletion(Long userId) {
+        afterCompletion(() -> {
+            versions.merge(userId, sequence.incrementAndGet(), Math::max);
+            dropIfFull();
+        });
+    }
+
+    /**
+     * Stop tracking deleted user after current transaction, or right away if there is no transaction.
+     */
+    void dropAfterCompletion(Long userId) {
+        afterCompletion(() -> versions.remove(userId));
+    }
+
+    private String tag(long version) {
+        return epoch + "-" + Long.toString(version, Character.MAX_RADIX);
+    }
+
+    private void dropIfFull() {
+        if (versions.size() <= maxTrackedUsers) {
+            return;
+        }
+        Iterator<Long> userIds = versions.keySet().iterator();
+        while (versions.size() > maxTrackedUsers / 2 && userIds.hasNext()) {
+            userIds.next();
+            userIds.remove();
+        }
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
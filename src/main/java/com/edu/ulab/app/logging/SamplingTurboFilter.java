@@ -0,0 +1,71 @@
+package com.edu.ulab.app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SamplingTurboFilter passes only given share of DEBUG and TRACE events of a logger and its children.
+ * Rates are set in logback-spring.xml as sample elements "logger.name=rate", where rate is in [0, 1],
+ * the most specific logger wins. INFO, WARN and ERROR events are never dropped.
+ * The filter runs before the level check, so rates are resolved once per logger and cached.
+ * Level checks like isDebugEnabled() come without format and are not sampled,
+ * otherwise a guarded event would be sampled twice.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+    private static final double NOT_SAMPLED = 1.0;
+
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private final Map<String, Double> resolvedRates = new ConcurrentHashMap<>();
+
+    /**
+     * @param sample is "logger.name=rate".
+     */
+    public void addSample(String sample) {
+        int separator = sample.lastIndexOf('=');
+        if (separator < 0) {
+            addError("Sample must be logger=rate, but was " + sample);
+            return;
+        }
+        double rate = Double.parseDouble(sample.substring(separator + 1).trim());
+        if (rate < 0 || rate > 1) {
+            addError("Sample rate must be in [0, 1], but was " + sample);
+            return;
+        }
+        rates.put(sample.substring(0, separator).trim(), rate);
+        resolvedRates.clear();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || format == null || level.isGreaterOrEqual(Level.INFO)) {
+            return FilterReply.NEUTRAL;
+        }
+        double rate = resolvedRates.computeIfAbsent(logger.getName(), this::resolveRate);
+        if (rate >= NOT_SAMPLED || ThreadLocalRandom.current().nextDouble() < rate) {
+            return FilterReply.NEUTRAL;
+        }
+        return FilterReply.DENY;
+    }
+
+    private double resolveRate(String loggerName) {
+        String name = loggerName;
+        while (true) {
+            Double rate = rates.get(name);
+            if (rate != null) {
+                return rate;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return NOT_SAMPLED;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+}
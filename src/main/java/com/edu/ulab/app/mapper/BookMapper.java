@@ -4,14 +4,17 @@ import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.entity.Book;
 import com.edu.ulab.app.web.request.BookRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring")
 public interface BookMapper {
 
+    @Mapping(target = "userId", ignore = true)
     BookDto bookRequestToBookDto(BookRequest bookRequest);
 
     BookRequest bookDtoToBookRequest(BookDto bookDto);
 
+    @Mapping(target = "version", ignore = true)
     Book bookDtoToBook(BookDto bookDto);
 
     BookDto bookToBookDto(Book book);
@@ -4,6 +4,7 @@ import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.web.request.UserRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring")
 public interface UserMapper {
@@ -11,6 +12,7 @@ public interface UserMapper {
 
     UserRequest userDtoToUserRequest(UserDto userDto);
 
+    @Mapping(target = "version", ignore = true)
     Person userDtoToPerson(UserDto userDto);
 
     UserDto personToUserDto(Person person);
@@ -0,0 +1,110 @@
+package com.edu.ulab.app.metrics;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LayerMetricsAspect times public methods of UserDataFacade, services and local storage.
+ * Timers are named by layer (app.facade, app.service, app.storage) and tagged by class,
+ * operation, backend and exception, so count of a timer is throughput of the operation
+ * and count with exception other than "none" is its error rate.
+ * Backend of a service is found by the class name suffix of FacadeProperties.Backend.
+ * Services called by another service, like database delegates of tiered and write-behind services,
+ * are timed as app.service.delegate, so app.service counts every facade call of a service once.
+ * Timers are registered once for every set of tags and reused.
+ */
+@Aspect
+@Component
+public class LayerMetricsAspect {
+    private static final String NO_EXCEPTION = "none";
+    private static final String UNKNOWN_BACKEND = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final String storageBackend;
+    private final Map<Class<?>, String> serviceBackends = new ConcurrentHashMap<>();
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    /**
+     * Set while a service method runs on the thread.
+     */
+    private final ThreadLocal<Boolean> inService = new ThreadLocal<>();
+
+    public LayerMetricsAspect(MeterRegistry meterRegistry, StorageProperties storageProperties) {
+        this.meterRegistry = meterRegistry;
+        this.storageBackend = storageProperties.getBackend().name().toLowerCase(Locale.ROOT);
+    }
+
+    @Around("within(com.edu.ulab.app.facade.UserDataFacade) && execution(public * *(..))")
+    public Object timeFacade(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("app.facade", "facade", joinPoint);
+    }
+
+    @Around("within(com.edu.ulab.app.service.impl..*) && execution(public * *(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        String backend = serviceBackends.computeIfAbsent(joinPoint.getTarget().getClass(), LayerMetricsAspect::serviceBackend);
+        if (inService.get() != null) {
+            return time("app.service.delegate", backend, joinPoint);
+        }
+        inService.set(Boolean.TRUE);
+        try {
+            return time("app.service", backend, joinPoint);
+        } finally {
+            inService.remove();
+        }
+    }
+
+    @Around("target(com.edu.ulab.app.storage.Storage) && execution(public * *(..))")
+    public Object timeStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("app.storage", storageBackend, joinPoint);
+    }
+
+    private Object time(String name, String backend, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = NO_EXCEPTION;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable exc) {
+            exception = exc.getClass().getSimpleName();
+            throw exc;
+        } finally {
+            TimerKey key = new TimerKey(name, joinPoint.getTarget().getClass().getSimpleName(),
+                    joinPoint.getSignature().getName(), backend, exception);
+            sample.stop(timers.computeIfAbsent(key, this::register));
+        }
+    }
+
+    private Timer register(TimerKey key) {
+        return Timer.builder(key.name())
+                .tag("class", key.className())
+                .tag("operation", key.operation())
+                .tag("backend", key.backend())
+                .tag("exception", key.exception())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return name of facade backend, which service class implements, in the form used in application.yaml.
+     */
+    private static String serviceBackend(Class<?> serviceClass) {
+        String className = serviceClass.getSimpleName();
+        return Arrays.stream(FacadeProperties.Backend.values())
+                .filter(backend -> className.endsWith(backend.beanName("")))
+                .map(backend -> backend.name().toLowerCase(Locale.ROOT).replace('_', '-'))
+                .findFirst()
+                .orElse(UNKNOWN_BACKEND);
+    }
+
+    private record TimerKey(String name, String className, String operation, String backend, String exception) {
+    }
+}
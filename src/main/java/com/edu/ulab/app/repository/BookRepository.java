@@ -1,19 +1,26 @@
 package com.edu.ulab.app.repository;
 
 import com.edu.ulab.app.entity.Book;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.persistence.LockModeType;
 import java.util.List;
-import java.util.Optional;
 
 public interface BookRepository extends CrudRepository<Book, Long> {
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("select b from Book b where b.id = :id")
-    Optional<Book> findByIdForUpdate(long id);
-
     List<Book> findBooksByUserId(Long userId);
+
+    @Query("select b.id from Book b where b.userId = :userId")
+    List<Long> findBookIdsByUserId(Long userId);
+
+    @Query("select b.id from Book b where b.userId = :userId and b.id > :afterId order by b.id")
+    List<Long> findBookIdsByUserIdAfter(Long userId, long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Book b where b.userId = :userId")
+    int deleteBooksByUserId(Long userId);
 }
@@ -0,0 +1,74 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.storage.BookSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * BookSearchRepository keeps full text index over books in database.
+ * Index is loaded from BOOK table on startup through a cursor with fixed fetch size,
+ * after that database backends apply their changes to it after commit.
+ */
+@Slf4j
+@Repository
+public class BookSearchRepository {
+    private final String SELECT_ALL_SQL = "SELECT ID, USER_ID, TITLE, AUTHOR, PAGE_COUNT, VERSION FROM BOOK";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+
+    public BookSearchRepository(DataSource dataSource,
+                                @Value("${search.fetch-size}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    @PostConstruct
+    void load() {
+        jdbcTemplate.query(SELECT_ALL_SQL, rs -> {
+            Book book = new Book(rs.getLong(1), rs.getObject(2, Long.class), rs.getString(3), rs.getString(4), rs.getLong(5));
+            book.setVersion(rs.getLong(6));
+            searchIndex.add(book);
+        });
+        log.info("Loaded {} books to search index", searchIndex.size());
+    }
+
+    /**
+     * Index created or updated book.
+     * Owner of indexed book is kept, if given book doesn't have userId.
+     * Version is database version of the row, book with older version than indexed one is ignored,
+     * book without version replaces indexed one.
+     */
+    public void index(Book book) {
+        Long userId = book.getUserId();
+        if (userId == null) {
+            Book indexed = searchIndex.get(book.getId());
+            userId = indexed == null ? null : indexed.getUserId();
+        }
+        Book indexedBook = new Book(book.getId(), userId, book.getTitle(), book.getAuthor(), book.getPageCount());
+        indexedBook.setVersion(book.getVersion());
+        searchIndex.add(indexedBook);
+    }
+
+    public void remove(long bookId) {
+        searchIndex.remove(bookId);
+    }
+
+    public void removeAllByUserId(Long userId) {
+        searchIndex.removeAllByUserId(userId);
+    }
+
+    /**
+     * @see BookSearchIndex#search(String, int, int)
+     */
+    public List<BookSearchIndex.Hit> search(String query, int offset, int limit) {
+        return searchIndex.search(query, offset, limit);
+    }
+}
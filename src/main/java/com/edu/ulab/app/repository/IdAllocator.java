@@ -0,0 +1,22 @@
+package com.edu.ulab.app.repository;
+
+/**
+ * IdAllocator hands out unique entity ids.
+ */
+@FunctionalInterface
+public interface IdAllocator {
+    /**
+     * Number of ids which are taken from database sequence at once.
+     * Sequences in schema.sql are incremented by the same value.
+     */
+    int ALLOCATION_SIZE = 50;
+
+    long nextId();
+
+    /**
+     * Make sure ids which are handed out later are greater than given one.
+     * @param id is id which has been assigned already.
+     */
+    default void reserve(long id) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.edu.ulab.app.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SequenceIdAllocator takes ids from database sequence with pooled optimizer,
+ * the same way Hibernate does for entities.
+ * Sequence value is the highest id of the block of ALLOCATION_SIZE ids,
+ * so one round trip gives ids for ALLOCATION_SIZE inserts and blocks never overlap
+ * with blocks taken by Hibernate or other allocators.
+ */
+@Slf4j
+public class SequenceIdAllocator implements IdAllocator {
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+
+    // guarded by lock, which is not a monitor, so virtual threads are not pinned during the query
+    private final Lock lock = new ReentrantLock();
+    private long next = 1;
+    private long high = 0;
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, String sequenceName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+    }
+
+    @Override
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next > high) {
+                high = nextSequenceValue();
+                next = high - ALLOCATION_SIZE + 1;
+                log.debug("Allocated ids {}..{} from {}", next, high, sequenceName);
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restart sequence after given id, if it would hand it out again.
+     */
+    @Override
+    public void reserve(long id) {
+        lock.lock();
+        try {
+            if (next <= high && next > id) {
+                return;
+            }
+            high = nextSequenceValue();
+            next = high - ALLOCATION_SIZE + 1;
+            if (next <= id) {
+                long restartValue = id + ALLOCATION_SIZE;
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequenceName + " RESTART WITH " + restartValue);
+                high = 0;
+                next = 1;
+                log.info("Sequence {} restarted with {}", sequenceName, restartValue);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long nextSequenceValue() {
+        Long value = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequenceName, Long.class);
+        if (value == null) {
+            throw new IllegalStateException("Sequence " + sequenceName + " returned null");
+        }
+        return value;
+    }
+}
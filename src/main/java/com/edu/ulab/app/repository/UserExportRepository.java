@@ -0,0 +1,81 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.dto.UserWithBookIdsDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * UserExportRepository reads all users with ids of their books by one ordered join.
+ * Rows are read through a cursor with fixed fetch size and every user is handed out
+ * as soon as his last row is read, so memory doesn't depend on table size.
+ */
+@Slf4j
+@Repository
+public class UserExportRepository {
+    private final String SELECT_ALL_SQL = "SELECT P.ID, P.FULL_NAME, P.TITLE, P.AGE, B.ID AS BOOK_ID "
+            + "FROM PERSON P LEFT JOIN BOOK B ON B.USER_ID = P.ID ORDER BY P.ID, B.ID";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserExportRepository(DataSource dataSource,
+                                @Value("${export.fetch-size}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Pass every user with ids of his books to consumer in order of user id.
+     * @param consumer receives users one by one.
+     * @return count of users.
+     */
+    public long forEachUserWithBookIds(Consumer<UserWithBookIdsDto> consumer) {
+        UserGroupingHandler handler = new UserGroupingHandler(consumer);
+        jdbcTemplate.query(SELECT_ALL_SQL, handler);
+        handler.finish();
+        log.debug("Exported {} users", handler.count);
+        return handler.count;
+    }
+
+    private static class UserGroupingHandler implements RowCallbackHandler {
+        private final Consumer<UserWithBookIdsDto> consumer;
+        private UserWithBookIdsDto current;
+        private long count;
+
+        UserGroupingHandler(Consumer<UserWithBookIdsDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long userId = rs.getLong("ID");
+            if (current == null || current.getId() != userId) {
+                finish();
+                current = new UserWithBookIdsDto();
+                current.setId(userId);
+                current.setFullName(rs.getString("FULL_NAME"));
+                current.setTitle(rs.getString("TITLE"));
+                current.setAge(rs.getInt("AGE"));
+            }
+            long bookId = rs.getLong("BOOK_ID");
+            if (!rs.wasNull()) {
+                current.getBooksIdList().add(bookId);
+            }
+        }
+
+        void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                count++;
+                current = null;
+            }
+        }
+    }
+}
@@ -1,12 +1,10 @@
 package com.edu.ulab.app.repository;
 
 import com.edu.ulab.app.entity.Person;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
-
-import javax.persistence.LockModeType;
-import java.util.Optional;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface UserRepository extends CrudRepository<Person, Long> {
 
@@ -16,7 +14,8 @@ public interface UserRepository extends CrudRepository<Person, Long> {
     User has books - book - finished
      */
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("select p from Person p where p.id = :id")
-    Optional<Person> findByIdForUpdate(long id);
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Person p where p.id = :id")
+    int deletePersonById(Long id);
 }
@@ -0,0 +1,499 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.exception.BackpressureException;
+import com.edu.ulab.app.storage.BookStorage;
+import com.edu.ulab.app.storage.UserStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * WriteBehindFlusher writes mutations, which were applied to local storage and acknowledged,
+ * to database in background.
+ * Mutations are queued in a bounded queue. A write takes place in the queue before it is applied to storage,
+ * it waits for free place up to enqueue timeout and is rejected with BackpressureException then,
+ * so a rejected write changes nothing.
+ * Flusher thread takes up to batch size mutations, coalesces mutations of the same row to the last one
+ * and writes them with JDBC batches in one transaction: user upserts, book upserts, book deletes,
+ * user deletes, so foreign keys hold. Failed batch is retried up to max retries, then its rows are written
+ * one by one and rows which still fail are dead-lettered: logged, counted and dropped, so storage
+ * and pending deletes fall back to the database state.
+ * Flushed entities are evicted from storage, unless they were changed again meanwhile,
+ * so storage keeps only entities which are newer than database.
+ * Storage versions are local to the buffer, database version is incremented by every flushed upsert.
+ * Upsert of an existing book keeps its owner, as updates of other backends do.
+ * Flusher thread runs only when user or book backend of the facade is write-behind.
+ * Queue is drained on shutdown. Writes are queued under read lock of lifecycle and stop takes its write lock,
+ * so a write which has found flusher running is queued before flusher is told to stop.
+ */
+@Slf4j
+@Component
+public class WriteBehindFlusher {
+    private final String UPSERT_PERSON_SQL = "MERGE INTO PERSON P USING (VALUES (CAST(? AS BIGINT), ?, ?, CAST(? AS INT))) "
+            + "S(ID, FULL_NAME, TITLE, AGE) ON P.ID = S.ID "
+            + "WHEN MATCHED THEN UPDATE SET FULL_NAME = S.FULL_NAME, TITLE = S.TITLE, AGE = S.AGE, VERSION = P.VERSION + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (ID, FULL_NAME, TITLE, AGE) VALUES (S.ID, S.FULL_NAME, S.TITLE, S.AGE)";
+    private final String UPSERT_BOOK_SQL = "MERGE INTO BOOK B USING (VALUES (CAST(? AS BIGINT), ?, ?, CAST(? AS BIGINT), CAST(? AS BIGINT))) "
+            + "S(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) ON B.ID = S.ID "
+            + "WHEN MATCHED THEN UPDATE SET TITLE = S.TITLE, AUTHOR = S.AUTHOR, PAGE_COUNT = S.PAGE_COUNT, VERSION = B.VERSION + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (S.ID, S.TITLE, S.AUTHOR, S.PAGE_COUNT, S.USER_ID)";
+    private final String DELETE_BOOK_SQL = "DELETE FROM BOOK WHERE ID=?";
+    private final String DELETE_BOOKS_BY_USER_ID_SQL = "DELETE FROM BOOK WHERE USER_ID=?";
+    private final String DELETE_PERSON_SQL = "DELETE FROM PERSON WHERE ID=?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserStorage userStorage;
+    private final BookStorage bookStorage;
+    private final BookSearchRepository bookSearchRepository;
+    private final StorageProperties.WriteBehind properties;
+    private final BlockingQueue<Mutation> queue;
+    /**
+     * Free places of the queue, a place is taken before storage is changed and freed when flusher takes the mutation.
+     */
+    private final Semaphore places;
+    /**
+     * Deletes which are queued but not flushed yet, database still has these rows.
+     */
+    private final Map<Key, Integer> pendingDeletes = new ConcurrentHashMap<>();
+    /**
+     * Mutations taken from queue but left for the next batch, used only by flusher thread.
+     */
+    private final Deque<Mutation> carriedOver = new ArrayDeque<>();
+    private final Timer lag;
+    private final Counter flushed;
+    private final Counter coalesced;
+    private final Counter failures;
+    private final Counter deadLetters;
+    private final boolean enabled;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private Thread flusherThread;
+    private volatile boolean running;
+
+    public WriteBehindFlusher(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              UserStorage userStorage,
+                              BookStorage bookStorage,
+                              BookSearchRepository bookSearchRepository,
+                              StorageProperties storageProperties,
+                              FacadeProperties facadeProperties,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userStorage = userStorage;
+        this.bookStorage = bookStorage;
+        this.bookSearchRepository = bookSearchRepository;
+        this.properties = storageProperties.getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.places = new Semaphore(properties.getQueueCapacity());
+        meterRegistry.gauge("write_behind.queue.depth", queue, BlockingQueue::size);
+        this.lag = Timer.builder("write_behind.lag")
+                .description("Time from acknowledged write to its commit in database")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushed = meterRegistry.counter("write_behind.flushed");
+        this.coalesced = meterRegistry.counter("write_behind.coalesced");
+        this.failures = meterRegistry.counter("write_behind.failures");
+        this.deadLetters = meterRegistry.counter("write_behind.dead_letters");
+        this.enabled = facadeProperties.getUserBackend() == FacadeProperties.Backend.WRITE_BEHIND
+                || facadeProperties.getBookBackend() == FacadeProperties.Backend.WRITE_BEHIND;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusherThread = new Thread(this::run, "write-behind-flusher");
+        flusherThread.start();
+    }
+
+    /**
+     * Stop accepting mutations and wait until all queued ones are written.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusherThread == null) {
+            return;
+        }
+        Lock lock = lifecycle.writeLock();
+        lock.lock();
+        try {
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        flusherThread.join();
+        log.info("Write-behind flusher stopped, {} mutations left", queue.size() + carriedOver.size());
+    }
+
+    /**
+     * Take place in the queue, save person to storage and queue the saved one.
+     * @param save saves person to storage and returns saved one.
+     * @throws BackpressureException if queue is full, then save is not called.
+     */
+    public Person savePerson(Supplier<Person> save) {
+        return enqueue(null, save, person -> new Mutation(Kind.SAVE_PERSON, person.getId(), person, null));
+    }
+
+    /**
+     * Take place in the queue, remove person from storage and queue the delete.
+     * @param delete removes person from storage.
+     * @throws BackpressureException if queue is full, then delete is not called.
+     */
+    public void deletePerson(long id, Runnable delete) {
+        enqueue(new Key(Kind.DELETE_PERSON, id), asSupplier(delete), ignored -> new Mutation(Kind.DELETE_PERSON, id, null, null));
+    }
+
+    /**
+     * Take place in the queue, save book to storage and queue the saved one.
+     * @param save saves book to storage and returns saved one.
+     * @throws BackpressureException if queue is full, then save is not called.
+     */
+    public Book saveBook(Supplier<Book> save) {
+        return enqueue(null, save, book -> new Mutation(Kind.SAVE_BOOK, book.getId(), null, book));
+    }
+
+    /**
+     * Take place in the queue, remove book from storage and queue the delete.
+     * @param delete removes book from storage.
+     * @throws BackpressureException if queue is full, then delete is not called.
+     */
+    public void deleteBook(long id, Runnable delete) {
+        enqueue(new Key(Kind.DELETE_BOOK, id), asSupplier(delete), ignored -> new Mutation(Kind.DELETE_BOOK, id, null, null));
+    }
+
+    /**
+     * Take place in the queue, remove user's books from storage and queue the delete.
+     * @param delete removes user's books from storage and returns their count.
+     * @return count returned by delete.
+     * @throws BackpressureException if queue is full, then delete is not called.
+     */
+    public int deleteBooksByUserId(long userId, IntSupplier delete) {
+        return enqueue(new Key(Kind.DELETE_BOOKS_BY_USER_ID, userId), delete::getAsInt,
+                ignored -> new Mutation(Kind.DELETE_BOOKS_BY_USER_ID, userId, null, null));
+    }
+
+    /**
+     * @return true if user's delete is queued, but database still has the row.
+     */
+    public boolean isPersonDeletePending(long id) {
+        return pendingDeletes.containsKey(new Key(Kind.DELETE_PERSON, id));
+    }
+
+    /**
+     * @return true if book's delete is queued, but database still has the row.
+     */
+    public boolean isBookDeletePending(long id) {
+        return pendingDeletes.containsKey(new Key(Kind.DELETE_BOOK, id));
+    }
+
+    /**
+     * @return true if delete of user's books is queued, but database still has the rows.
+     */
+    public boolean isBooksDeletePending(long userId) {
+        return pendingDeletes.containsKey(new Key(Kind.DELETE_BOOKS_BY_USER_ID, userId));
+    }
+
+    /**
+     * Delete is marked pending before storage is changed, so reads don't fall back to the database row
+     * which is going to be deleted. If storage change fails, place and mark are given back.
+     * @param pendingDelete key of delete or null for save.
+     */
+    private <R> R enqueue(Key pendingDelete, Supplier<R> apply, Function<R, Mutation> mutationOf) {
+        Lock lock = lifecycle.readLock();
+        lock.lock();
+        try {
+            takePlace();
+            if (pendingDelete != null) {
+                pendingDeletes.merge(pendingDelete, 1, Integer::sum);
+            }
+            R result;
+            try {
+                result = apply.get();
+            } catch (RuntimeException exc) {
+                if (pendingDelete != null) {
+                    clearPendingDelete(pendingDelete);
+                }
+                places.release();
+                throw exc;
+            }
+            queue.add(mutationOf.apply(result));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void takePlace() {
+        if (!running) {
+            throw new BackpressureException("Write-behind flusher is not running");
+        }
+        try {
+            if (places.tryAcquire(properties.getEnqueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        throw new BackpressureException("Write-behind queue is full, try again later");
+    }
+
+    private void clearPendingDelete(Key key) {
+        pendingDeletes.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static Supplier<Void> asSupplier(Runnable runnable) {
+        return () -> {
+            runnable.run();
+            return null;
+        };
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty() || !carriedOver.isEmpty()) {
+            try {
+                List<Mutation> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    flushWithRetry(batch);
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                log.error("Write-behind flusher interrupted, {} mutations left", queue.size());
+                return;
+            }
+        }
+    }
+
+    private List<Mutation> nextBatch() throws InterruptedException {
+        List<Mutation> taken = new ArrayList<>(carriedOver);
+        carriedOver.clear();
+        if (taken.isEmpty()) {
+            Mutation first = queue.poll(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return taken;
+            }
+            taken.add(first);
+            places.release();
+        }
+        places.release(queue.drainTo(taken, properties.getBatchSize() - taken.size()));
+        return taken;
+    }
+
+    private void flushWithRetry(List<Mutation> batch) throws InterruptedException {
+        Map<Row, Mutation> coalescedBatch = coalesce(batch);
+        for (int attempt = 1; attempt <= properties.getMaxRetries(); attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(coalescedBatch.values()));
+                afterFlush(batch, coalescedBatch.values(), List.of());
+                return;
+            } catch (RuntimeException exc) {
+                failures.increment();
+                log.error("Write-behind flush of {} mutations failed, attempt {} of {}: {}",
+                        coalescedBatch.size(), attempt, properties.getMaxRetries(), exc.getMessage());
+                Thread.sleep(properties.getRetryBackoff().toMillis());
+            }
+        }
+        flushOneByOne(batch, coalescedBatch.values());
+    }
+
+    /**
+     * Write every row of failed batch in its own transaction, in the order write() uses for the batch.
+     * Rows which fail are dead-lettered.
+     */
+    private void flushOneByOne(List<Mutation> batch, Collection<Mutation> rows) {
+        List<Mutation> written = new ArrayList<>();
+        List<Mutation> failed = new ArrayList<>();
+        rows.stream()
+                .sorted(Comparator.comparing(Mutation::kind))
+                .forEach(mutation -> {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> write(List.of(mutation)));
+                        written.add(mutation);
+                    } catch (RuntimeException exc) {
+                        failed.add(mutation);
+                        deadLetters.increment();
+                        log.error("Write-behind mutation {} is dead-lettered: {}", mutation, exc.getMessage());
+                    }
+                });
+        afterFlush(batch, written, failed);
+    }
+
+    /**
+     * Keep the last mutation of every row in the position of the first one.
+     * Book saved after delete of its owner's books in the same batch is carried over to the next batch,
+     * because deletes are written after saves.
+     */
+    private Map<Row, Mutation> coalesce(List<Mutation> batch) {
+        Map<Row, Mutation> rows = new LinkedHashMap<>();
+        Set<Long> usersWithDeletedBooks = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Mutation mutation = batch.get(i);
+            if (mutation.kind() == Kind.SAVE_BOOK && usersWithDeletedBooks.contains(mutation.book().getUserId())) {
+                carriedOver.addAll(batch.subList(i, batch.size()));
+                batch.subList(i, batch.size()).clear();
+                break;
+            }
+            if (mutation.kind() == Kind.DELETE_BOOKS_BY_USER_ID) {
+                usersWithDeletedBooks.add(mutation.id());
+            }
+            if (rows.put(mutation.row(), mutation) != null) {
+                coalesced.increment();
+            }
+        }
+        return rows;
+    }
+
+    private void write(Iterable<Mutation> mutations) {
+        List<Person> savedPersons = new ArrayList<>();
+        List<Book> savedBooks = new ArrayList<>();
+        List<Object[]> deletedBooks = new ArrayList<>();
+        List<Object[]> deletedUsersBooks = new ArrayList<>();
+        List<Object[]> deletedPersons = new ArrayList<>();
+        for (Mutation mutation : mutations) {
+            switch (mutation.kind()) {
+                case SAVE_PERSON -> savedPersons.add(mutation.person());
+                case SAVE_BOOK -> savedBooks.add(mutation.book());
+                case DELETE_BOOK -> deletedBooks.add(new Object[]{mutation.id()});
+                case DELETE_BOOKS_BY_USER_ID -> deletedUsersBooks.add(new Object[]{mutation.id()});
+                case DELETE_PERSON -> deletedPersons.add(new Object[]{mutation.id()});
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_PERSON_SQL, savedPersons, savedPersons.size(), (ps, person) -> {
+            ps.setLong(1, person.getId());
+            ps.setString(2, person.getFullName());
+            ps.setString(3, person.getTitle());
+            ps.setInt(4, person.getAge());
+        });
+        jdbcTemplate.batchUpdate(UPSERT_BOOK_SQL, savedBooks, savedBooks.size(), (ps, book) -> {
+            ps.setLong(1, book.getId());
+            ps.setString(2, book.getTitle());
+            ps.setString(3, book.getAuthor());
+            ps.setObject(4, book.getPageCount());
+            ps.setObject(5, book.getUserId());
+        });
+        jdbcTemplate.batchUpdate(DELETE_BOOK_SQL, deletedBooks);
+        jdbcTemplate.batchUpdate(DELETE_BOOKS_BY_USER_ID_SQL, deletedUsersBooks);
+        jdbcTemplate.batchUpdate(DELETE_PERSON_SQL, deletedPersons);
+    }
+
+    /**
+     * Search index of database is updated before buffered books are evicted and pending deletes are cleared,
+     * so every book is visible in storage or in database index.
+     * Saves of dead-lettered rows are evicted as well, so storage doesn't keep entities which database never gets.
+     */
+    private void afterFlush(List<Mutation> batch, Collection<Mutation> written, Collection<Mutation> failed) {
+        for (Mutation mutation : written) {
+            switch (mutation.kind()) {
+                case SAVE_BOOK -> bookSearchRepository.index(withoutVersion(mutation.book()));
+                case DELETE_BOOK -> bookSearchRepository.remove(mutation.id());
+                case DELETE_BOOKS_BY_USER_ID -> bookSearchRepository.removeAllByUserId(mutation.id());
+                default -> {
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (Mutation mutation : batch) {
+            lag.record(now - mutation.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            if (mutation.kind().isDelete()) {
+                clearPendingDelete(mutation.key());
+            }
+        }
+        for (Mutation mutation : concat(written, failed)) {
+            if (mutation.kind() == Kind.SAVE_PERSON) {
+                userStorage.evict(mutation.id(), mutation.person().getVersion());
+            } else if (mutation.kind() == Kind.SAVE_BOOK) {
+                bookStorage.evict(mutation.id(), mutation.book().getVersion());
+            }
+        }
+        flushed.increment(batch.size());
+        log.debug("Flushed {} mutations as {} rows", batch.size(), written.size());
+    }
+
+    /**
+     * Storage version is not the database one, flushed book is indexed without version.
+     */
+    private static Book withoutVersion(Book book) {
+        return new Book(book.getId(), book.getUserId(), book.getTitle(), book.getAuthor(), book.getPageCount());
+    }
+
+    private static List<Mutation> concat(Collection<Mutation> first, Collection<Mutation> second) {
+        List<Mutation> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    /**
+     * Kinds are declared in the order their rows are written, so foreign keys hold.
+     */
+    private enum Kind {
+        SAVE_PERSON, SAVE_BOOK, DELETE_BOOK, DELETE_BOOKS_BY_USER_ID, DELETE_PERSON;
+
+        boolean isDelete() {
+            return this == DELETE_PERSON || this == DELETE_BOOK || this == DELETE_BOOKS_BY_USER_ID;
+        }
+    }
+
+    /**
+     * Kind and id of mutation.
+     */
+    private record Key(Kind kind, long id) {
+    }
+
+    /**
+     * Row which is changed by mutation, saves and deletes of the same row share it.
+     */
+    private record Row(String table, long id) {
+    }
+
+    private record Mutation(Kind kind, long id, Person person, Book book, long enqueuedNanos) {
+        Mutation(Kind kind, long id, Person person, Book book) {
+            this(kind, id, person, book, System.nanoTime());
+        }
+
+        Key key() {
+            return new Key(kind, id);
+        }
+
+        Row row() {
+            return switch (kind) {
+                case SAVE_PERSON, DELETE_PERSON -> new Row("PERSON", id);
+                case SAVE_BOOK, DELETE_BOOK -> new Row("BOOK", id);
+                case DELETE_BOOKS_BY_USER_ID -> new Row("BOOK.USER_ID", id);
+            };
+        }
+    }
+}
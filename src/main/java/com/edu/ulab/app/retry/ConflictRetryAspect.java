@@ -0,0 +1,62 @@
+package com.edu.ulab.app.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ConflictRetryAspect retries methods annotated with RetryOnConflict up to retry.max-attempts times.
+ * It has the highest precedence, so it runs outside of transaction interceptor and every attempt
+ * is a new transaction. Attempts are separated by linear backoff with jitter.
+ * Conflicts are counted in app.conflicts, tagged by operation and outcome (retried or exhausted).
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public ConflictRetryAspect(MeterRegistry meterRegistry,
+                               @Value("${retry.max-attempts}") int maxAttempts,
+                               @Value("${retry.backoff}") Duration backoff) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoff.toMillis();
+    }
+
+    @Around("@annotation(com.edu.ulab.app.retry.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException exc) {
+                if (attempt >= maxAttempts) {
+                    countConflict(operation, "exhausted");
+                    log.warn("{} failed after {} attempts: {}", operation, attempt, exc.getMessage());
+                    throw exc;
+                }
+                countConflict(operation, "retried");
+                log.debug("{} attempt {} conflicted, retrying: {}", operation, attempt, exc.getMessage());
+                Thread.sleep(backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+            }
+        }
+    }
+
+    private void countConflict(String operation, String outcome) {
+        meterRegistry.counter("app.conflicts", "operation", operation, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,17 @@
+package com.edu.ulab.app.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Method is called again when it fails with OptimisticLockingFailureException.
+ * Retry wraps the transaction of the method, so every attempt reads fresh data.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -9,11 +9,34 @@ import java.util.List;
 public interface BookService {
     BookDto createBook(BookDto userDto);
 
+    List<BookDto> createBooks(List<BookDto> bookDtos);
+
     BookDto updateBook(BookDto userDto);
 
+    List<BookDto> updateBooks(List<BookDto> bookDtos);
+
     BookDto getBookById(Long id);
 
     void deleteBookById(Long id);
 
+    int deleteBooksByUserId(Long userId);
+
     List<BookDto> findBooksByUserId(Long id);
+
+    List<Long> findBookIdsByUserId(Long userId);
+
+    /**
+     * Page of ids of user's books in ascending order.
+     * @param afterId page starts after this id, 0 for the first page.
+     * @param limit max count of ids.
+     */
+    List<Long> findBookIdsByUserId(Long userId, long afterId, int limit);
+
+    /**
+     * Search books by words of title and author, best matches first.
+     * @param query terms, every one must match a word or start of a word.
+     * @param offset count of best matches to skip.
+     * @param limit max count of books.
+     */
+    List<BookDto> searchBooks(String query, int offset, int limit);
 }
@@ -2,9 +2,13 @@ package com.edu.ulab.app.service;
 
 import com.edu.ulab.app.dto.UserDto;
 
+import java.util.List;
+
 public interface UserService {
     UserDto createUser(UserDto userDto);
 
+    List<UserDto> createUsers(List<UserDto> userDtos);
+
     UserDto updateUser(UserDto userDto);
 
     UserDto getUserById(Long id);
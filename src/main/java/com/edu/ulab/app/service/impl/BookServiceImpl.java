@@ -7,11 +7,17 @@ import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.repository.BookRepository;
+import com.edu.ulab.app.repository.BookSearchRepository;
 import com.edu.ulab.app.service.BookService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * BookServiceImpl class is implement basic CRUD operations for book using jpa.
@@ -24,10 +30,14 @@ public class BookServiceImpl implements BookService {
 
     private final BookMapper bookMapper;
 
+    private final BookSearchRepository bookSearchRepository;
+
     public BookServiceImpl(BookRepository bookRepository,
-                           BookMapper bookMapper) {
+                           BookMapper bookMapper,
+                           BookSearchRepository bookSearchRepository) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
+        this.bookSearchRepository = bookSearchRepository;
     }
 
     /**
@@ -46,12 +56,37 @@ public class BookServiceImpl implements BookService {
             throw new NullArgumentException("BookDto cannot be null");
         }
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped book: {}", book);
+        log.debug("Mapped book: {}", book);
         Book savedBook = bookRepository.save(book);
-        log.info("Saved book: {}", savedBook);
+        log.debug("Saved book: {}", savedBook);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.index(savedBook));
         return bookMapper.bookToBookDto(savedBook);
     }
 
+    /**
+     * Method which saves list of new books in database in one batch.
+     * Inserts are grouped in JDBC batches of hibernate.jdbc.batch_size.
+     * @param bookDtos objects received from upper layer.
+     * @return saved books mapped to bookDtos in the same order.
+     * @throws NullArgumentException if given list is null.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        List<Book> books = bookDtos.stream().map(bookMapper::bookDtoToBook).toList();
+        log.debug("Mapped {} books", books.size());
+        List<Book> saved = StreamSupport.stream(bookRepository.saveAll(books).spliterator(), false).toList();
+        TransactionCallbacks.afterCommit(() -> saved.forEach(bookSearchRepository::index));
+        List<BookDto> savedBooks = saved.stream()
+                .map(bookMapper::bookToBookDto)
+                .toList();
+        log.debug("Saved books: {}", savedBooks);
+        return savedBooks;
+    }
+
     /**
      * Method which update books in storage.
      * Firstly, it maps bookDto to book.
@@ -70,21 +105,62 @@ public class BookServiceImpl implements BookService {
             throw new NullArgumentException("BookDto cannot be null");
         }
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped book: {}", book);
+        log.debug("Mapped book: {}", book);
 
-        Book foundBookToUpdate = bookRepository.findByIdForUpdate(book.getId())
+        Book foundBookToUpdate = bookRepository.findById(book.getId())
                 .orElseThrow(() -> new NotFoundException("Book with id=" + book.getId() + " not found"));
-        log.info("Found book to update {}", foundBookToUpdate);
-        book.setTitle(book.getTitle());
-        book.setAuthor(book.getAuthor());
-        book.setPageCount(book.getPageCount());
+        log.debug("Found book to update {}", foundBookToUpdate);
+        copyChanges(book, foundBookToUpdate);
 
         Book updatedBook = bookRepository.save(foundBookToUpdate);
-        log.info("Updated book {}", updatedBook);
+        log.debug("Updated book {}", updatedBook);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.index(updatedBook));
 
         return bookMapper.bookToBookDto(updatedBook);
     }
 
+    /**
+     * Method which updates list of books in database.
+     * All books are loaded with one IN query, changes are applied to loaded entities
+     * and flushed in JDBC batches of hibernate.jdbc.batch_size.
+     * @param bookDtos objects received from upper layer, they must have ids.
+     * @return updated books mapped to bookDtos in the same order.
+     * @throws NullArgumentException if given list or id of book is null.
+     * @throws NotFoundException if database doesn't contain one of received books
+     */
+    @Override
+    public List<BookDto> updateBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        List<Book> books = bookDtos.stream().map(bookMapper::bookDtoToBook).toList();
+        if (books.stream().anyMatch(book -> book.getId() == null)) {
+            throw new NullArgumentException("Id of book to update cannot be null");
+        }
+        Map<Long, Book> foundBooks = StreamSupport.stream(
+                        bookRepository.findAllById(books.stream().map(Book::getId).toList()).spliterator(), false)
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        log.debug("Found {} books to update", foundBooks.size());
+        List<Book> booksToUpdate = books.stream()
+                .map(book -> {
+                    Book foundBook = foundBooks.get(book.getId());
+                    if (foundBook == null) {
+                        throw new NotFoundException("Book with id=" + book.getId() + " not found");
+                    }
+                    copyChanges(book, foundBook);
+                    return foundBook;
+                })
+                .toList();
+        List<Book> updated = StreamSupport.stream(bookRepository.saveAll(booksToUpdate).spliterator(), false).toList();
+        TransactionCallbacks.afterCommit(() -> updated.forEach(bookSearchRepository::index));
+        List<BookDto> updatedBooks = updated.stream()
+                .map(bookMapper::bookToBookDto)
+                .toList();
+        log.debug("Updated books {}", updatedBooks);
+        return updatedBooks;
+    }
+
     /**
      * Getting Book from database by its id.
      * @param id is book's id.
@@ -95,9 +171,9 @@ public class BookServiceImpl implements BookService {
     public BookDto getBookById(Long id) {
         Book foundBook = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Book with id=" + id + " not found"));
-        log.info("Found book with id={}: {}", id, foundBook);
+        log.debug("Found book with id={}: {}", id, foundBook);
         BookDto bookDto = bookMapper.bookToBookDto(foundBook);
-        log.info("Mapped book to bookDto {}", bookDto);
+        log.debug("Mapped book to bookDto {}", bookDto);
         return bookDto;
     }
 
@@ -110,9 +186,32 @@ public class BookServiceImpl implements BookService {
     public void deleteBookById(Long id) {
         Book bookToDelete = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Book with id=" + id + " not found"));
-        log.info("Book to delete {}", bookToDelete);
+        log.debug("Book to delete {}", bookToDelete);
         bookRepository.deleteById(bookToDelete.getId());
-        log.info("Book {} was deleted", bookToDelete);
+        log.debug("Book {} was deleted", bookToDelete);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.remove(id));
+    }
+
+    /**
+     * Delete all user's books with one statement.
+     * @param userId id of books' owner.
+     * @return count of deleted books.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        int deletedCount = bookRepository.deleteBooksByUserId(userId);
+        log.debug("Deleted {} books of user with id={}", deletedCount, userId);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.removeAllByUserId(userId));
+        return deletedCount;
+    }
+
+    /**
+     * Copy fields, which can be updated, from received book to loaded one.
+     */
+    private static void copyChanges(Book from, Book to) {
+        to.setTitle(from.getTitle());
+        to.setAuthor(from.getAuthor());
+        to.setPageCount(from.getPageCount());
     }
 
     /**
@@ -127,9 +226,51 @@ public class BookServiceImpl implements BookService {
         if (foundBookByUserId == null) {
             throw new NotFoundException("There are no books in database with user id=" + id);
         }
-        log.info("Found list of books in database with user id={}, {} ", id, foundBookByUserId);
+        log.debug("Found list of books in database with user id={}, {} ", id, foundBookByUserId);
         List<BookDto> bookDtoList = foundBookByUserId.stream().map(bookMapper::bookToBookDto).toList();
-        log.info("List of books mapped to list of bookDtos {}", bookDtoList);
+        log.debug("List of books mapped to list of bookDtos {}", bookDtoList);
         return bookDtoList;
     }
+
+    /**
+     * Find ids of user's books, entities are not loaded.
+     * @param userId user id
+     * @return list of ids of books where userId equals to arg's id
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId) {
+        List<Long> bookIds = bookRepository.findBookIdsByUserId(userId);
+        log.debug("Found book ids in database with user id={}, {}", userId, bookIds);
+        return bookIds;
+    }
+
+    /**
+     * Find page of ids of user's books, the page is a range scan of (USER_ID, ID) index.
+     * @param userId user id
+     * @param afterId page starts after this id, 0 for the first page
+     * @param limit max count of ids
+     * @return ids of user's books in ascending order
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId, long afterId, int limit) {
+        List<Long> bookIds = bookRepository.findBookIdsByUserIdAfter(userId, afterId, PageRequest.ofSize(limit));
+        log.debug("Found {} book ids in database with user id={} after id={}", bookIds.size(), userId, afterId);
+        return bookIds;
+    }
+
+    /**
+     * Search books in the index, which follows committed changes of this service.
+     * @param query terms of title and author
+     * @param offset count of best matches to skip
+     * @param limit max count of books
+     * @return matched books mapped to bookDtos, best first
+     */
+    @Override
+    public List<BookDto> searchBooks(String query, int offset, int limit) {
+        List<BookDto> bookDtos = bookSearchRepository.search(query, offset, limit).stream()
+                .map(hit -> bookMapper.bookToBookDto(hit.book()))
+                .toList();
+        log.debug("Found {} books by query '{}'", bookDtos.size(), query);
+        return bookDtos;
+    }
 }
@@ -1,71 +1,294 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.config.IdAllocatorConfig;
 import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.NullArgumentException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.repository.BookSearchRepository;
+import com.edu.ulab.app.repository.IdAllocator;
 import com.edu.ulab.app.service.BookService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 
+/**
+ * BookServiceImplTemplate class is implement basic CRUD operations for book using JdbcTemplate.
+ * Updates read owner and version of books first and change only rows which still have that version,
+ * so a concurrent update fails with OptimisticLockingFailureException, as it does with JPA.
+ * Owner of a book is never changed by update.
+ */
 @Slf4j
 @Service
 public class BookServiceImplTemplate implements BookService {
+    private final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+    private final String UPDATE_SQL = "UPDATE BOOK SET TITLE=?, AUTHOR=?, PAGE_COUNT=?, VERSION=VERSION+1 WHERE ID=? AND VERSION=?";
+    private final String SELECT_OWNERS_AND_VERSIONS_SQL = "SELECT ID, USER_ID, VERSION FROM BOOK WHERE ID = ANY(?)";
+    private final String SELECT_SQL = "SELECT ID, USER_ID, TITLE, AUTHOR, PAGE_COUNT FROM BOOK WHERE ID=?";
+    private final String SELECT_BY_USER_ID_SQL = "SELECT ID, USER_ID, TITLE, AUTHOR, PAGE_COUNT FROM BOOK WHERE USER_ID=?";
+    private final String DELETE_SQL = "DELETE FROM BOOK WHERE ID=?";
+    private final String DELETE_BY_USER_ID_SQL = "DELETE FROM BOOK WHERE USER_ID=?";
+    private final String SELECT_IDS_BY_USER_ID_SQL = "SELECT ID FROM BOOK WHERE USER_ID=?";
+    private final String SELECT_IDS_PAGE_BY_USER_ID_SQL =
+            "SELECT ID FROM BOOK WHERE USER_ID=? AND ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+    private static final RowMapper<BookDto> BOOK_DTO_MAPPER = new BookDtoMapper();
 
     private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
+    private final BookMapper bookMapper;
+    private final BookSearchRepository bookSearchRepository;
 
-    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate) {
+    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   @Qualifier(IdAllocatorConfig.BOOK_ID_ALLOCATOR) IdAllocator idAllocator,
+                                   BookMapper bookMapper,
+                                   BookSearchRepository bookSearchRepository) {
         this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+        this.bookMapper = bookMapper;
+        this.bookSearchRepository = bookSearchRepository;
     }
 
     @Override
     public BookDto createBook(BookDto bookDto) {
-        final String INSERT_SQL = "INSERT INTO BOOK(TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                new PreparedStatementCreator() {
-                    public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-                        PreparedStatement ps =
-                                connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                        ps.setString(1, bookDto.getTitle());
-                        ps.setString(2, bookDto.getAuthor());
-                        ps.setLong(3, bookDto.getPageCount());
-                        ps.setLong(4, bookDto.getUserId());
-                        return ps;
-                    }
-                },
-                keyHolder);
-
-        bookDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        if (bookDto == null) {
+            log.error("Given bookDto is null");
+            throw new NullArgumentException("BookDto cannot be null");
+        }
+        bookDto.setId(idAllocator.nextId());
+        jdbcTemplate.update(INSERT_SQL,
+                bookDto.getId(), bookDto.getTitle(), bookDto.getAuthor(), bookDto.getPageCount(), bookDto.getUserId());
+        indexAfterCommit(List.of(toBook(bookDto, 0L)));
         return bookDto;
     }
 
+    /**
+     * Inserts all books with one JDBC batch, ids are allocated before insert.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        bookDtos.forEach(bookDto -> bookDto.setId(idAllocator.nextId()));
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BookDto bookDto = bookDtos.get(i);
+                ps.setLong(1, bookDto.getId());
+                ps.setString(2, bookDto.getTitle());
+                ps.setString(3, bookDto.getAuthor());
+                ps.setObject(4, bookDto.getPageCount());
+                ps.setObject(5, bookDto.getUserId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return bookDtos.size();
+            }
+        });
+        log.debug("Inserted {} books with one batch", bookDtos.size());
+        indexAfterCommit(bookDtos.stream().map(bookDto -> toBook(bookDto, 0L)).toList());
+        return bookDtos;
+    }
+
+    /**
+     * @return updated book with its stored owner.
+     * @throws NotFoundException if book doesn't exist.
+     * @throws OptimisticLockingFailureException if book was updated concurrently.
+     */
     @Override
     public BookDto updateBook(BookDto bookDto) {
-        // реализовать недстающие методы
-        return null;
+        if (bookDto == null) {
+            log.error("Given bookDto is null");
+            throw new NullArgumentException("BookDto cannot be null");
+        }
+        return updateBooks(List.of(bookDto)).get(0);
     }
 
+    /**
+     * Reads owners and versions of all books with one query and updates them with one JDBC batch.
+     * @return updated books with their stored owners.
+     * @throws NotFoundException if one of books doesn't exist, nothing is updated then.
+     * @throws OptimisticLockingFailureException if one of books was updated concurrently.
+     */
+    @Override
+    public List<BookDto> updateBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        if (bookDtos.stream().anyMatch(bookDto -> bookDto.getId() == null)) {
+            throw new NullArgumentException("Id of book to update cannot be null");
+        }
+        Map<Long, StoredBook> storedBooks = findStoredBooks(bookDtos);
+        // the same book may be updated more than once in the batch, every update increments its version
+        Map<Long, Long> nextVersions = new HashMap<>();
+        long[] versions = new long[bookDtos.size()];
+        for (int i = 0; i < bookDtos.size(); i++) {
+            BookDto bookDto = bookDtos.get(i);
+            StoredBook storedBook = storedBooks.get(bookDto.getId());
+            if (storedBook == null) {
+                throw new NotFoundException("Book with id=" + bookDto.getId() + " not found");
+            }
+            bookDto.setUserId(storedBook.userId());
+            versions[i] = nextVersions.merge(bookDto.getId(), storedBook.version(), (version, ignored) -> version + 1);
+        }
+        int[] updatedCounts = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BookDto bookDto = bookDtos.get(i);
+                ps.setString(1, bookDto.getTitle());
+                ps.setString(2, bookDto.getAuthor());
+                ps.setObject(3, bookDto.getPageCount());
+                ps.setLong(4, bookDto.getId());
+                ps.setLong(5, versions[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return bookDtos.size();
+            }
+        });
+        for (int i = 0; i < updatedCounts.length; i++) {
+            if (updatedCounts[i] == 0) {
+                throw new OptimisticLockingFailureException("Book with id=" + bookDtos.get(i).getId()
+                        + " was updated concurrently");
+            }
+        }
+        log.debug("Updated {} books with one batch", bookDtos.size());
+        List<Book> books = new ArrayList<>(bookDtos.size());
+        for (int i = 0; i < bookDtos.size(); i++) {
+            books.add(toBook(bookDtos.get(i), versions[i] + 1));
+        }
+        indexAfterCommit(books);
+        return bookDtos;
+    }
+
+    /**
+     * @throws NotFoundException if book doesn't exist.
+     */
     @Override
     public BookDto getBookById(Long id) {
-        // реализовать недстающие методы
-        return null;
+        List<BookDto> bookDtos = jdbcTemplate.query(SELECT_SQL, BOOK_DTO_MAPPER, id);
+        if (bookDtos.isEmpty()) {
+            throw new NotFoundException("Book with id=" + id + " not found");
+        }
+        log.debug("Found book by id={}, {}", id, bookDtos.get(0));
+        return bookDtos.get(0);
     }
 
+    /**
+     * @throws NotFoundException if book doesn't exist.
+     */
     @Override
     public void deleteBookById(Long id) {
-        // реализовать недстающие методы
+        if (jdbcTemplate.update(DELETE_SQL, id) == 0) {
+            throw new NotFoundException("Book with id=" + id + " not found");
+        }
+        log.debug("Book with id={} was deleted", id);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.remove(id));
+    }
+
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        int deletedCount = jdbcTemplate.update(DELETE_BY_USER_ID_SQL, userId);
+        log.debug("Deleted {} books of user with id={}", deletedCount, userId);
+        TransactionCallbacks.afterCommit(() -> bookSearchRepository.removeAllByUserId(userId));
+        return deletedCount;
     }
 
     @Override
     public List<BookDto> findBooksByUserId(Long id) {
-        return null;
+        List<BookDto> bookDtos = jdbcTemplate.query(SELECT_BY_USER_ID_SQL, BOOK_DTO_MAPPER, id);
+        log.debug("Found {} books by user id={}", bookDtos.size(), id);
+        return bookDtos;
+    }
+
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId) {
+        List<Long> bookIds = jdbcTemplate.queryForList(SELECT_IDS_BY_USER_ID_SQL, Long.class, userId);
+        log.debug("Found book ids by user id={}, {}", userId, bookIds);
+        return bookIds;
+    }
+
+    /**
+     * Page of ids is a range scan of (USER_ID, ID) index, which stops after limit rows.
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId, long afterId, int limit) {
+        List<Long> bookIds = jdbcTemplate.queryForList(SELECT_IDS_PAGE_BY_USER_ID_SQL, Long.class, userId, afterId, limit);
+        log.debug("Found {} book ids by user id={} after id={}", bookIds.size(), userId, afterId);
+        return bookIds;
+    }
+
+    @Override
+    public List<BookDto> searchBooks(String query, int offset, int limit) {
+        List<BookDto> bookDtos = bookSearchRepository.search(query, offset, limit).stream()
+                .map(hit -> bookMapper.bookToBookDto(hit.book()))
+                .toList();
+        log.debug("Found {} books by query '{}'", bookDtos.size(), query);
+        return bookDtos;
+    }
+
+    /**
+     * Books are given as copies, because dtos may be changed before commit.
+     */
+    private void indexAfterCommit(List<Book> books) {
+        TransactionCallbacks.afterCommit(() -> books.forEach(bookSearchRepository::index));
+    }
+
+    /**
+     * @param version version of the row in database.
+     */
+    private Book toBook(BookDto bookDto, long version) {
+        Book book = bookMapper.bookDtoToBook(bookDto);
+        book.setVersion(version);
+        return book;
+    }
+
+    private Map<Long, StoredBook> findStoredBooks(List<BookDto> bookDtos) {
+        Long[] ids = bookDtos.stream().map(BookDto::getId).distinct().toArray(Long[]::new);
+        Map<Long, StoredBook> storedBooks = new HashMap<>();
+        jdbcTemplate.query(SELECT_OWNERS_AND_VERSIONS_SQL,
+                rs -> {
+                    storedBooks.put(rs.getLong(1), new StoredBook(rs.getObject(2, Long.class), rs.getLong(3)));
+                },
+                (Object) ids);
+        return storedBooks;
+    }
+
+    /**
+     * Owner and version of book row.
+     */
+    private record StoredBook(Long userId, long version) {
+    }
+
+    /**
+     * Maps columns by their positions in select lists of this class.
+     */
+    private static class BookDtoMapper implements RowMapper<BookDto> {
+        public BookDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+            BookDto bookDto = new BookDto();
+            bookDto.setId(rs.getLong(1));
+            bookDto.setUserId(rs.getLong(2));
+            bookDto.setTitle(rs.getString(3));
+            bookDto.setAuthor(rs.getString(4));
+            bookDto.setPageCount(rs.getLong(5));
+            return bookDto;
+        }
     }
 }
@@ -2,11 +2,13 @@ package com.edu.ulab.app.service.impl;
 
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.service.BookService;
 import com.edu.ulab.app.storage.BookStorage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -41,23 +43,43 @@ public class BookServiceLocalStorageImpl implements BookService {
             log.error("Given bookDto is null");
             throw new NullArgumentException("BookDto cannot be null");
         }
-        log.info("Got bookDto {} in createBook method", bookDto);
+        log.debug("Got bookDto {} in createBook method", bookDto);
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped to bookEntity {}", book);
+        log.debug("Mapped to bookEntity {}", book);
         book = bookStorage.save(book);
-        log.info("Saved book {}", book);
+        log.debug("Saved book {}", book);
         bookDto = bookMapper.bookToBookDto(book);
-        log.info("Mapped bookEntity to bookDto {}", bookDto);
+        log.debug("Mapped bookEntity to bookDto {}", bookDto);
         return bookDto;
     }
+    /**
+     * Method which saves list of new books in storage.
+     * @param bookDtos objects received from upper layer.
+     * @return saved books mapped to bookDtos in the same order.
+     * @throws NullArgumentException if given list is null.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        return bookDtos.stream()
+                .map(this::createBook)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Method which update books in storage.
-     * Firstly, it maps bookDto to bookEntity.
-     * Then update new book.
+     * Firstly, it reads stored book, so ids which weren't given by allocator are never stored.
+     * Then maps bookDto to bookEntity with owner and version of stored book and updates the book,
+     * so storage rejects the update if the book was updated after it was read.
      * And finally maps bookEntity to bookDto.
      * @param bookDto object received from upper layer.
      * @return updated book mapped to bookDto.
-     * @throws NullArgumentException if given bookDto is null.
+     * @throws NullArgumentException if given bookDto or its id is null.
+     * @throws NotFoundException if storage doesn't have the book.
+     * @throws OptimisticLockingFailureException if the book was updated concurrently.
      */
     @Override
     public BookDto updateBook(BookDto bookDto) {
@@ -65,16 +87,41 @@ public class BookServiceLocalStorageImpl implements BookService {
             log.error("Given bookDto is null");
             throw new NullArgumentException("BookDto cannot be null");
         }
-        log.info("Got bookDto {} in updateBook method", bookDto);
+        if (bookDto.getId() == null) {
+            log.error("Given bookDto has no id");
+            throw new NullArgumentException("Id of book to update cannot be null");
+        }
+        log.debug("Got bookDto {} in updateBook method", bookDto);
+        Book storedBook = bookStorage.findById(bookDto.getId());
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped to bookEntity {}", book);
+        book.setUserId(storedBook.getUserId());
+        book.setVersion(storedBook.getVersion());
+        log.debug("Mapped to bookEntity {}", book);
         Book updatedBook = bookStorage.save(book);
-        log.info("Updated book {}", updatedBook);
+        log.debug("Updated book {}", updatedBook);
         bookDto = bookMapper.bookToBookDto(updatedBook);
-        log.info("Mapped bookEntity to bookDto {}", bookDto);
+        log.debug("Mapped bookEntity to bookDto {}", bookDto);
         return bookDto;
     }
 
+    /**
+     * Method which updates list of books in storage.
+     * @param bookDtos objects received from upper layer.
+     * @return updated books mapped to bookDtos in the same order.
+     * @throws NullArgumentException if given list is null.
+     * @throws NotFoundException if storage doesn't have one of books, books before it stay updated.
+     */
+    @Override
+    public List<BookDto> updateBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        return bookDtos.stream()
+                .map(this::updateBook)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Getting Book from storage by its id.
      * @param id is book's id.
@@ -82,9 +129,9 @@ public class BookServiceLocalStorageImpl implements BookService {
      */
     @Override
     public BookDto getBookById(Long id) {
-        log.info("Got book id {} in getBookById method", id);
+        log.debug("Got book id {} in getBookById method", id);
         Book book = bookStorage.findById(id);
-        log.info("Found book {} by id={}", book, id);
+        log.debug("Found book {} by id={}", book, id);
         return bookMapper.bookToBookDto(book);
     }
 
@@ -94,9 +141,22 @@ public class BookServiceLocalStorageImpl implements BookService {
      */
     @Override
     public void deleteBookById(Long id) {
-        log.info("Got book id {} in deleteBookById method", id);
+        log.debug("Got book id {} in deleteBookById method", id);
         bookStorage.deleteById(id);
-        log.info("Book with id={} has been deleted", id);
+        log.debug("Book with id={} has been deleted", id);
+    }
+
+    /**
+     * Delete all user's books from storage.
+     * @param userId id of books' owner.
+     * @return count of deleted books.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        log.debug("Got user id {} in deleteBooksByUserId method", userId);
+        int deletedCount = bookStorage.deleteAllByUserId(userId);
+        log.debug("Deleted {} books of user with id={}", deletedCount, userId);
+        return deletedCount;
     }
 
     /**
@@ -106,9 +166,50 @@ public class BookServiceLocalStorageImpl implements BookService {
      */
     @Override
     public List<BookDto> findBooksByUserId(Long id) {
-        log.info("Got book id {} in findBooksByUserId method", id);
+        log.debug("Got book id {} in findBooksByUserId method", id);
         List<Book> books = bookStorage.findAllByUserId(id);
-        log.info("Found books by userID {}", books);
+        log.debug("Found books by userID {}", books);
         return books.stream().map(bookMapper::bookToBookDto).collect(Collectors.toList());
     }
+
+    /**
+     * Find ids of user's books in the index, books are not loaded.
+     * @param userId user id
+     * @return list of ids of books where userId equals to arg's id
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId) {
+        log.debug("Got user id {} in findBookIdsByUserId method", userId);
+        List<Long> bookIds = bookStorage.findIdsByUserId(userId);
+        log.debug("Found book ids by userID {}", bookIds);
+        return bookIds;
+    }
+
+    /**
+     * Find page of ids of user's books in the index.
+     * @param userId user id
+     * @param afterId page starts after this id, 0 for the first page
+     * @param limit max count of ids
+     * @return ids of user's books in ascending order
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId, long afterId, int limit) {
+        log.debug("Got user id {} in findBookIdsByUserId method, after id {}", userId, afterId);
+        return bookStorage.findIdsByUserId(userId, afterId, limit);
+    }
+
+    /**
+     * Search books in the full text index of storage.
+     * @param query terms of title and author
+     * @param offset count of best matches to skip
+     * @param limit max count of books
+     * @return matched books mapped to bookDtos, best first
+     */
+    @Override
+    public List<BookDto> searchBooks(String query, int offset, int limit) {
+        log.debug("Got query '{}' in searchBooks method", query);
+        return bookStorage.search(query, offset, limit).stream()
+                .map(hit -> bookMapper.bookToBookDto(hit.book()))
+                .collect(Collectors.toList());
+    }
 }
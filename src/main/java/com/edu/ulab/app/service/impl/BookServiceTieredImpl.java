@@ -0,0 +1,253 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.storage.BookStorage;
+import com.edu.ulab.app.storage.TierPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * BookServiceTieredImpl keeps hot books in BookStorage in front of database backend,
+ * which is the system of record chosen by facade.tiered-system-of-record.
+ * Reads are served from storage and read through to database on miss.
+ * Writes go to database first and then to storage after commit.
+ * Books read from database are admitted only if no book was changed while they were loaded,
+ * so a read which overlaps a write doesn't put the older value back.
+ * Lists of user's books are served from storage only for users, whose books are all there.
+ */
+@Slf4j
+@Service
+public class BookServiceTieredImpl implements BookService {
+    private final BookService database;
+    private final BookStorage bookStorage;
+    private final BookMapper bookMapper;
+    private final TierPolicy tierPolicy;
+    /**
+     * Users, all books of which are in storage. Their books are admitted regardless of policy.
+     */
+    private final Set<Long> completeUsers = ConcurrentHashMap.newKeySet();
+    /**
+     * Count of applied book mutations, user is marked complete only if it didn't change during loading.
+     */
+    private final AtomicLong mutations = new AtomicLong();
+    /**
+     * Guards admission, so a loaded book is checked against mutations and saved before a written one is admitted.
+     */
+    private final Object admission = new Object();
+
+    public BookServiceTieredImpl(Map<String, BookService> bookServices,
+                                 BookStorage bookStorage,
+                                 BookMapper bookMapper,
+                                 StorageProperties storageProperties,
+                                 FacadeProperties facadeProperties) {
+        this.database = facadeProperties.tieredSystemOfRecord(bookServices, "book");
+        this.bookStorage = bookStorage;
+        this.bookMapper = bookMapper;
+        this.tierPolicy = new TierPolicy(storageProperties.getTier());
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        BookDto createdBook = database.createBook(bookDto);
+        TransactionCallbacks.afterCommit(() -> admit(createdBook));
+        return createdBook;
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        List<BookDto> createdBooks = database.createBooks(bookDtos);
+        TransactionCallbacks.afterCommit(() -> createdBooks.forEach(this::admit));
+        return createdBooks;
+    }
+
+    /**
+     * Stored book is evicted before update and updated one is admitted after commit,
+     * so reads never see a value which differs from committed one.
+     */
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        evict(bookDto.getId());
+        BookDto updatedBook = database.updateBook(bookDto);
+        TransactionCallbacks.afterCommit(() -> admit(updatedBook));
+        return updatedBook;
+    }
+
+    @Override
+    public List<BookDto> updateBooks(List<BookDto> bookDtos) {
+        bookDtos.forEach(bookDto -> evict(bookDto.getId()));
+        List<BookDto> updatedBooks = database.updateBooks(bookDtos);
+        TransactionCallbacks.afterCommit(() -> updatedBooks.forEach(this::admit));
+        return updatedBooks;
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        Book book = bookStorage.findIfPresent(id);
+        if (book != null) {
+            tierPolicy.touch(id);
+            log.debug("Book with id={} found in hot tier", id);
+            return bookMapper.bookToBookDto(book);
+        }
+        long mutationsBeforeLoad = mutations.get();
+        BookDto bookDto = database.getBookById(id);
+        TransactionCallbacks.afterCommit(() -> admitLoaded(bookDto, mutationsBeforeLoad));
+        return bookDto;
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        evict(id);
+        database.deleteBookById(id);
+        TransactionCallbacks.afterCommit(() -> evict(id));
+    }
+
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        evictUser(userId);
+        int deletedCount = database.deleteBooksByUserId(userId);
+        TransactionCallbacks.afterCommit(() -> evictUser(userId));
+        return deletedCount;
+    }
+
+    @Override
+    public List<BookDto> findBooksByUserId(Long id) {
+        if (completeUsers.contains(id)) {
+            log.debug("Books of user with id={} found in hot tier", id);
+            return bookStorage.findAllByUserId(id).stream()
+                    .peek(book -> tierPolicy.touch(book.getId()))
+                    .map(bookMapper::bookToBookDto)
+                    .collect(Collectors.toList());
+        }
+        long mutationsBeforeLoad = mutations.get();
+        List<BookDto> bookDtos = database.findBooksByUserId(id);
+        TransactionCallbacks.afterCommit(() -> admitUser(id, bookDtos, mutationsBeforeLoad, false));
+        return bookDtos;
+    }
+
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId) {
+        if (completeUsers.contains(userId)) {
+            return bookStorage.findIdsByUserId(userId);
+        }
+        return database.findBookIdsByUserId(userId);
+    }
+
+    /**
+     * Page of a user, whose books are not all in storage, is read from database.
+     * If policy admits the first book of the page, all user's books are loaded and admitted after commit,
+     * so next pages are served from storage.
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId, long afterId, int limit) {
+        if (completeUsers.contains(userId)) {
+            return bookStorage.findIdsByUserId(userId, afterId, limit);
+        }
+        long mutationsBeforeLoad = mutations.get();
+        List<Long> bookIds = database.findBookIdsByUserId(userId, afterId, limit);
+        if (!bookIds.isEmpty() && tierPolicy.admit(bookIds.get(0), false) != null) {
+            List<BookDto> bookDtos = database.findBooksByUserId(userId);
+            TransactionCallbacks.afterCommit(() -> admitUser(userId, bookDtos, mutationsBeforeLoad, true));
+        }
+        return bookIds;
+    }
+
+    /**
+     * Hot tier holds only part of books, so search goes to the index of database backend.
+     */
+    @Override
+    public List<BookDto> searchBooks(String query, int offset, int limit) {
+        return database.searchBooks(query, offset, limit);
+    }
+
+    /**
+     * Admit written book.
+     */
+    private void admit(BookDto bookDto) {
+        synchronized (admission) {
+            mutations.incrementAndGet();
+            store(bookDto);
+        }
+    }
+
+    /**
+     * Admit book read from database, if no book was changed since it was loaded.
+     */
+    private void admitLoaded(BookDto bookDto, long mutationsBeforeLoad) {
+        synchronized (admission) {
+            if (mutations.get() == mutationsBeforeLoad) {
+                store(bookDto);
+            }
+        }
+    }
+
+    /**
+     * Put book into storage, if policy admits it. Otherwise stored value is removed,
+     * so an older one doesn't stay in storage. Called while holding admission.
+     */
+    private void store(BookDto bookDto) {
+        List<Long> evicted = tierPolicy.admit(bookDto.getId(), completeUsers.contains(bookDto.getUserId()));
+        if (evicted == null) {
+            evictFromStorage(bookDto.getId());
+            return;
+        }
+        bookStorage.save(bookMapper.bookDtoToBook(bookDto));
+        evicted.forEach(this::evictFromStorage);
+    }
+
+    /**
+     * Put all user's books into storage and mark him complete, if books didn't change while they were loaded.
+     * @param admitted true if policy has already admitted the user, otherwise his first book is checked.
+     */
+    private void admitUser(Long userId, List<BookDto> bookDtos, long mutationsBeforeLoad, boolean admitted) {
+        synchronized (admission) {
+            if (mutations.get() != mutationsBeforeLoad
+                    || bookDtos.isEmpty()
+                    || !admitted && tierPolicy.admit(bookDtos.get(0).getId(), false) == null) {
+                return;
+            }
+            for (BookDto bookDto : bookDtos) {
+                tierPolicy.admit(bookDto.getId(), true).forEach(this::evictFromStorage);
+                bookStorage.save(bookMapper.bookDtoToBook(bookDto));
+            }
+            if (bookStorage.findIdsByUserId(userId).size() == bookDtos.size()) {
+                completeUsers.add(userId);
+            }
+        }
+    }
+
+    private void evict(Long id) {
+        mutations.incrementAndGet();
+        tierPolicy.remove(id);
+        evictFromStorage(id);
+    }
+
+    /**
+     * Remove book from storage, its owner is not complete anymore.
+     */
+    private void evictFromStorage(Long id) {
+        Book book = bookStorage.findIfPresent(id);
+        if (book != null) {
+            completeUsers.remove(book.getUserId());
+            bookStorage.evict(id);
+        }
+    }
+
+    private void evictUser(Long userId) {
+        mutations.incrementAndGet();
+        completeUsers.remove(userId);
+        bookStorage.findIdsByUserId(userId).forEach(tierPolicy::remove);
+        bookStorage.deleteAllByUserId(userId);
+    }
+}
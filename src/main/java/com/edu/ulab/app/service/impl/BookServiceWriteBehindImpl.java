@@ -0,0 +1,229 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.NullArgumentException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.repository.BookSearchRepository;
+import com.edu.ulab.app.repository.WriteBehindFlusher;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.storage.BookSearchIndex;
+import com.edu.ulab.app.storage.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * BookServiceWriteBehindImpl acknowledges writes once they are in BookStorage
+ * and writes them to database in background with WriteBehindFlusher.
+ * Storage is changed only after the write has got place in flusher's queue, so rejected write changes nothing.
+ * Storage keeps books, which are not flushed yet, reads fall back to database on miss.
+ * Lists of user's books merge buffered books with database ones, buffered books win.
+ */
+@Slf4j
+@Service
+public class BookServiceWriteBehindImpl implements BookService {
+    private final BookServiceImpl database;
+    private final BookStorage bookStorage;
+    private final BookMapper bookMapper;
+    private final WriteBehindFlusher flusher;
+    private final BookSearchRepository bookSearchRepository;
+
+    public BookServiceWriteBehindImpl(BookServiceImpl database,
+                                      BookStorage bookStorage,
+                                      BookMapper bookMapper,
+                                      WriteBehindFlusher flusher,
+                                      BookSearchRepository bookSearchRepository) {
+        this.database = database;
+        this.bookStorage = bookStorage;
+        this.bookMapper = bookMapper;
+        this.flusher = flusher;
+        this.bookSearchRepository = bookSearchRepository;
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        if (bookDto == null) {
+            log.error("Given bookDto is null");
+            throw new NullArgumentException("BookDto cannot be null");
+        }
+        return save(bookMapper.bookDtoToBook(bookDto));
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        return bookDtos.stream()
+                .map(this::createBook)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Book must exist in storage or in database, updated book is buffered in storage and keeps its owner.
+     * Buffered book is replaced only if it has the version which was read,
+     * so concurrent update fails with OptimisticLockingFailureException.
+     */
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        if (bookDto == null) {
+            log.error("Given bookDto is null");
+            throw new NullArgumentException("BookDto cannot be null");
+        }
+        Book bufferedBook = bookStorage.findIfPresent(bookDto.getId());
+        Book book = bookMapper.bookDtoToBook(bookDto);
+        if (bufferedBook == null) {
+            book.setUserId(getBookById(bookDto.getId()).getUserId());
+        } else {
+            book.setUserId(bufferedBook.getUserId());
+            book.setVersion(bufferedBook.getVersion());
+        }
+        return save(book);
+    }
+
+    @Override
+    public List<BookDto> updateBooks(List<BookDto> bookDtos) {
+        if (bookDtos == null) {
+            log.error("Given list of bookDtos is null");
+            throw new NullArgumentException("List of bookDtos cannot be null");
+        }
+        return bookDtos.stream()
+                .map(this::updateBook)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        Book book = bookStorage.findIfPresent(id);
+        if (book != null) {
+            log.debug("Book with id={} found in write-behind buffer", id);
+            return bookMapper.bookToBookDto(book);
+        }
+        if (flusher.isBookDeletePending(id)) {
+            log.error("Book with id={} is deleted", id);
+            throw new NotFoundException("Book with id: " + id + " not found");
+        }
+        BookDto bookDto = database.getBookById(id);
+        if (flusher.isBooksDeletePending(bookDto.getUserId())) {
+            log.error("Book with id={} is deleted with user's books", id);
+            throw new NotFoundException("Book with id: " + id + " not found");
+        }
+        return bookDto;
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        if (bookStorage.findIfPresent(id) == null) {
+            getBookById(id);
+        }
+        flusher.deleteBook(id, () -> bookStorage.evict(id));
+        log.debug("Book with id={} has been deleted", id);
+    }
+
+    /**
+     * Buffered books are removed at once, database ones are counted and removed by one queued delete.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        int databaseCount = findDatabaseBookIds(userId).size();
+        int bufferedCount = flusher.deleteBooksByUserId(userId, () -> bookStorage.deleteAllByUserId(userId));
+        int deletedCount = bufferedCount + databaseCount;
+        log.debug("Deleted {} books of user with id={}", deletedCount, userId);
+        return deletedCount;
+    }
+
+    @Override
+    public List<BookDto> findBooksByUserId(Long id) {
+        List<BookDto> bookDtos = new ArrayList<>();
+        bookStorage.findAllByUserId(id).forEach(book -> bookDtos.add(bookMapper.bookToBookDto(book)));
+        if (!flusher.isBooksDeletePending(id)) {
+            database.findBooksByUserId(id).stream()
+                    .filter(bookDto -> !isStale(bookDto.getId()))
+                    .forEach(bookDtos::add);
+        }
+        return bookDtos;
+    }
+
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId) {
+        List<Long> bookIds = new ArrayList<>(bookStorage.findIdsByUserId(userId));
+        bookIds.addAll(findDatabaseBookIds(userId));
+        return bookIds;
+    }
+
+    /**
+     * Buffered page and database page are merged by id, database rows of buffered or deleted books are skipped,
+     * so database is read again while the page is not full.
+     */
+    @Override
+    public List<Long> findBookIdsByUserId(Long userId, long afterId, int limit) {
+        TreeSet<Long> bookIds = new TreeSet<>(bookStorage.findIdsByUserId(userId, afterId, limit));
+        if (!flusher.isBooksDeletePending(userId)) {
+            long databaseAfterId = afterId;
+            List<Long> databaseIds;
+            do {
+                databaseIds = database.findBookIdsByUserId(userId, databaseAfterId, limit);
+                databaseIds.stream().filter(bookId -> !isStale(bookId)).forEach(bookIds::add);
+                databaseAfterId = databaseIds.isEmpty() ? databaseAfterId : databaseIds.get(databaseIds.size() - 1);
+            } while (databaseIds.size() == limit && bookIds.headSet(databaseAfterId, true).size() < limit);
+        }
+        return bookIds.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Best buffered matches and best database matches are merged by rank,
+     * database matches of buffered or deleted books are skipped.
+     * Book flushed between the two searches is found in both, buffered match is kept.
+     */
+    @Override
+    public List<BookDto> searchBooks(String query, int offset, int limit) {
+        int keep = BookSearchIndex.saturatedSum(offset, limit);
+        Map<Long, BookSearchIndex.Hit> hitsById = new LinkedHashMap<>();
+        bookStorage.search(query, 0, keep).forEach(hit -> hitsById.put(hit.book().getId(), hit));
+        bookSearchRepository.search(query, 0, keep).stream()
+                .filter(hit -> !isStale(hit.book().getId())
+                        && !flusher.isBooksDeletePending(hit.book().getUserId()))
+                .forEach(hit -> hitsById.putIfAbsent(hit.book().getId(), hit));
+        List<BookSearchIndex.Hit> hits = new ArrayList<>(hitsById.values());
+        hits.sort(BookSearchIndex.RANK);
+        return hits.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(hit -> bookMapper.bookToBookDto(hit.book()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ids of user's books in database, which are neither buffered nor deleted.
+     */
+    private List<Long> findDatabaseBookIds(Long userId) {
+        if (flusher.isBooksDeletePending(userId)) {
+            return List.of();
+        }
+        return database.findBookIdsByUserId(userId).stream()
+                .filter(bookId -> !isStale(bookId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if database row of book is stale: book is buffered or deleted.
+     */
+    private boolean isStale(Long bookId) {
+        return flusher.isBookDeletePending(bookId) || bookStorage.findIfPresent(bookId) != null;
+    }
+
+    private BookDto save(Book book) {
+        Book savedBook = flusher.saveBook(() -> bookStorage.save(book));
+        log.debug("Buffered book {}", savedBook);
+        return bookMapper.bookToBookDto(savedBook);
+    }
+}
@@ -10,6 +10,9 @@ import com.edu.ulab.app.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.stream.StreamSupport;
+
 /**
  * UserServiceImpl class is implement basic CRUD operations for user using jpa.
  */
@@ -41,11 +44,34 @@ public class UserServiceImpl implements UserService {
             throw new NullArgumentException("UserDto cannot be null");
         }
         Person user = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped user: {}", user);
+        log.debug("Mapped user: {}", user);
         Person savedUser = userRepository.save(user);
-        log.info("Saved user: {}", savedUser);
+        log.debug("Saved user: {}", savedUser);
         return userMapper.personToUserDto(savedUser);
     }
+
+    /**
+     * Method which saves list of new users in database in one batch.
+     * Inserts are grouped in JDBC batches of hibernate.jdbc.batch_size.
+     * @param userDtos objects received from upper layer.
+     * @return saved users mapped to userDtos in the same order.
+     * @throws NullArgumentException if given list is null.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        if (userDtos == null) {
+            log.error("Given list of userDtos is null");
+            throw new NullArgumentException("List of userDtos cannot be null");
+        }
+        List<Person> users = userDtos.stream().map(userMapper::userDtoToPerson).toList();
+        log.debug("Mapped {} users", users.size());
+        List<UserDto> savedUsers = StreamSupport.stream(userRepository.saveAll(users).spliterator(), false)
+                .map(userMapper::personToUserDto)
+                .toList();
+        log.debug("Saved users: {}", savedUsers);
+        return savedUsers;
+    }
+
     /**
      * Method which updates users in database.
      * Firstly, it maps userDto to person.
@@ -63,17 +89,17 @@ public class UserServiceImpl implements UserService {
             throw new NullArgumentException("UserDto cannot be null");
         }
         Person person = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped user: {}", person);
+        log.debug("Mapped user: {}", person);
 
-        Person foundPersonToUpdate = userRepository.findByIdForUpdate(person.getId())
+        Person foundPersonToUpdate = userRepository.findById(person.getId())
                 .orElseThrow(() -> new NotFoundException("User with id=" + person.getId() + " not found"));
-        log.info("Found user to update {}", foundPersonToUpdate);
+        log.debug("Found user to update {}", foundPersonToUpdate);
         foundPersonToUpdate.setAge(person.getAge());
         foundPersonToUpdate.setFullName(person.getFullName());
         foundPersonToUpdate.setTitle(person.getTitle());
 
         Person updatedPerson = userRepository.save(foundPersonToUpdate);
-        log.info("Updated user {}", updatedPerson);
+        log.debug("Updated user {}", updatedPerson);
         return userMapper.personToUserDto(updatedPerson);
     }
 
@@ -87,23 +113,22 @@ public class UserServiceImpl implements UserService {
     public UserDto getUserById(Long id) {
         Person foundPerson = userRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("User with id=" + id + " not found"));
-        log.info("Found user with id={}: {}", id, foundPerson);
+        log.debug("Found user with id={}: {}", id, foundPerson);
         UserDto userDto = userMapper.personToUserDto(foundPerson);
-        log.info("Mapped user to userDto {}", userDto);
+        log.debug("Mapped user to userDto {}", userDto);
         return userDto;
     }
 
     /**
-     * Delete user from storage using his id.
+     * Delete user from storage using his id with one statement.
      * @param id is user's id.
      * @throws NotFoundException if user with given id not found
      */
     @Override
     public void deleteUserById(Long id) {
-        Person personToDelete = userRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("User with id=" + id + " not found"));
-        log.info("User to delete {}", personToDelete);
-        userRepository.deleteById(personToDelete.getId());
-        log.info("User {} was deleted", personToDelete);
+        if (userRepository.deletePersonById(id) == 0) {
+            throw new NotFoundException("User with id=" + id + " not found");
+        }
+        log.debug("User with id={} was deleted", id);
     }
 }
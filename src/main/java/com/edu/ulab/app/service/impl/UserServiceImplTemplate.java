@@ -1,81 +1,142 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.config.IdAllocatorConfig;
 import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.NullArgumentException;
+import com.edu.ulab.app.repository.IdAllocator;
 import com.edu.ulab.app.service.UserService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Objects;
+import java.util.List;
 
+/**
+ * UserServiceImplTemplate class is implement basic CRUD operations for user using JdbcTemplate.
+ * Update reads version of user first and changes the row only if it still has that version,
+ * so a concurrent update fails with OptimisticLockingFailureException, as it does with JPA.
+ */
 @Slf4j
 @Service
 public class UserServiceImplTemplate implements UserService {
-    private final String INSERT_SQL = "INSERT INTO PERSON(FULL_NAME, TITLE, AGE) VALUES (?,?,?)";
-    private final String UPDATE_SQL = "UPDATE PERSON SET FULL_NAME = ?, TITLE=?, AGE=? WHERE ID=?";
-    private final String SELECT_SQL = "SELECT * FROM PERSON WHERE ID=?";
+    private final String INSERT_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
+    private final String UPDATE_SQL = "UPDATE PERSON SET FULL_NAME = ?, TITLE=?, AGE=?, VERSION=VERSION+1 WHERE ID=? AND VERSION=?";
+    private final String SELECT_VERSION_SQL = "SELECT VERSION FROM PERSON WHERE ID=?";
+    private final String SELECT_SQL = "SELECT ID, FULL_NAME, TITLE, AGE FROM PERSON WHERE ID=?";
     private final String DELETE_SQL = "DELETE FROM PERSON WHERE ID=?";
+    private static final RowMapper<UserDto> USER_DTO_MAPPER = new UserDtoMapper();
     private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
 
-    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate) {
+    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   @Qualifier(IdAllocatorConfig.PERSON_ID_ALLOCATOR) IdAllocator idAllocator) {
         this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
     }
 
     @Override
     public UserDto createUser(UserDto userDto) {
+        if (userDto == null) {
+            log.error("Given userDto is null");
+            throw new NullArgumentException("UserDto cannot be null");
+        }
+        userDto.setId(idAllocator.nextId());
+        jdbcTemplate.update(INSERT_SQL, userDto.getId(), userDto.getFullName(), userDto.getTitle(), userDto.getAge());
+        return userDto;
+    }
 
+    /**
+     * Inserts all users with one JDBC batch, ids are allocated before insert.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        if (userDtos == null) {
+            log.error("Given list of userDtos is null");
+            throw new NullArgumentException("List of userDtos cannot be null");
+        }
+        userDtos.forEach(userDto -> userDto.setId(idAllocator.nextId()));
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserDto userDto = userDtos.get(i);
+                ps.setLong(1, userDto.getId());
+                ps.setString(2, userDto.getFullName());
+                ps.setString(3, userDto.getTitle());
+                ps.setInt(4, userDto.getAge());
+            }
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                connection -> {
-                    PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                    ps.setString(1, userDto.getFullName());
-                    ps.setString(2, userDto.getTitle());
-                    ps.setLong(3, userDto.getAge());
-                    return ps;
-                }, keyHolder);
-
-        userDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        return userDto;
+            @Override
+            public int getBatchSize() {
+                return userDtos.size();
+            }
+        });
+        log.debug("Inserted {} users with one batch", userDtos.size());
+        return userDtos;
     }
 
+    /**
+     * @throws NotFoundException if user doesn't exist.
+     * @throws OptimisticLockingFailureException if user was updated concurrently.
+     */
     @Override
     public UserDto updateUser(UserDto userDto) {
-        jdbcTemplate.update(UPDATE_SQL, userDto.getFullName(), userDto.getTitle(), userDto.getAge(), userDto.getId());
-        log.info("User: {} was updated", userDto);
+        if (userDto == null) {
+            log.error("Given userDto is null");
+            throw new NullArgumentException("UserDto cannot be null");
+        }
+        List<Long> versions = jdbcTemplate.queryForList(SELECT_VERSION_SQL, Long.class, userDto.getId());
+        if (versions.isEmpty()) {
+            throw new NotFoundException("User with id=" + userDto.getId() + " not found");
+        }
+        int updatedCount = jdbcTemplate.update(UPDATE_SQL,
+                userDto.getFullName(), userDto.getTitle(), userDto.getAge(), userDto.getId(), versions.get(0));
+        if (updatedCount == 0) {
+            throw new OptimisticLockingFailureException("User with id=" + userDto.getId() + " was updated concurrently");
+        }
+        log.debug("User: {} was updated", userDto);
         return userDto;
     }
 
+    /**
+     * @throws NotFoundException if user doesn't exist.
+     */
     @Override
     public UserDto getUserById(Long id) {
-        UserDto userDto = jdbcTemplate.queryForObject(SELECT_SQL, new Object[]{id}, new UserDtoMapper());
-        if (userDto == null){
+        List<UserDto> userDtos = jdbcTemplate.query(SELECT_SQL, USER_DTO_MAPPER, id);
+        if (userDtos.isEmpty()) {
             throw new NotFoundException("User with id=" + id + " not found");
         }
-        log.info("Found user by id={}, {}", id, userDto);
-        return userDto;
+        log.debug("Found user by id={}, {}", id, userDtos.get(0));
+        return userDtos.get(0);
     }
 
     @Override
     public void deleteUserById(Long id) {
-        jdbcTemplate.update(DELETE_SQL, id);
+        if (jdbcTemplate.update(DELETE_SQL, id) == 0) {
+            throw new NotFoundException("User with id=" + id + " not found");
+        }
+        log.debug("User with id={} was deleted", id);
     }
 
+    /**
+     * Maps columns by their positions in select list of this class.
+     */
     private static class UserDtoMapper implements RowMapper<UserDto> {
         public UserDto mapRow(ResultSet rs, int rowNum) throws SQLException {
             UserDto userDto = new UserDto();
-            userDto.setId(rs.getLong("ID"));
-            userDto.setFullName(rs.getString("FULL_NAME"));
-            userDto.setTitle(rs.getString("TITLE"));
-            userDto.setAge(rs.getInt("AGE"));
+            userDto.setId(rs.getLong(1));
+            userDto.setFullName(rs.getString(2));
+            userDto.setTitle(rs.getString(3));
+            userDto.setAge(rs.getInt(4));
             return userDto;
         }
     }
@@ -2,13 +2,18 @@ package com.edu.ulab.app.service.impl;
 
 import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
 import com.edu.ulab.app.mapper.UserMapper;
 import com.edu.ulab.app.service.UserService;
 import com.edu.ulab.app.storage.UserStorage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * UserServiceLocalStorageImpl class is implement basic CRUD operations for user using map as a storage.
  */
@@ -38,24 +43,44 @@ public class UserServiceLocalStorageImpl implements UserService {
             log.error("Given userDto is null");
             throw new NullArgumentException("UserDto cannot be null");
         }
-        log.info("Got userDto {} in createUser method", userDto);
+        log.debug("Got userDto {} in createUser method", userDto);
         Person person = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped to userEntity {}", person);
+        log.debug("Mapped to userEntity {}", person);
         person = userStorage.save(person);
-        log.info("Saved user {}", person);
+        log.debug("Saved user {}", person);
         userDto = userMapper.personToUserDto(person);
-        log.info("Mapped userEntity to userDto {}", userDto);
+        log.debug("Mapped userEntity to userDto {}", userDto);
         return userDto;
     }
 
+    /**
+     * Method which saves list of new users in storage.
+     * @param userDtos objects received from upper layer.
+     * @return saved users mapped to userDtos in the same order.
+     * @throws NullArgumentException if given list is null.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        if (userDtos == null) {
+            log.error("Given list of userDtos is null");
+            throw new NullArgumentException("List of userDtos cannot be null");
+        }
+        return userDtos.stream()
+                .map(this::createUser)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Method which updates users in storage.
-     * Firstly, it maps userDto to userEntity.
-     * Then update user data.
+     * Firstly, it reads stored user, so ids which weren't given by allocator are never stored.
+     * Then maps userDto to userEntity with version of stored user and updates user data,
+     * so storage rejects the update if the user was updated after he was read.
      * And finally maps userEntity to userDto.
      * @param userDto object received from upper layer.
      * @return updated user mapped to userDto.
-     * @throws NullArgumentException if given userDto is null.
+     * @throws NullArgumentException if given userDto or its id is null.
+     * @throws NotFoundException if storage doesn't have the user.
+     * @throws OptimisticLockingFailureException if the user was updated concurrently.
      */
     @Override
     public UserDto updateUser(UserDto userDto) {
@@ -63,13 +88,19 @@ public class UserServiceLocalStorageImpl implements UserService {
             log.error("Given userDto is null");
             throw new NullArgumentException("UserDto cannot be null");
         }
-        log.info("Got userDto {} in updateUser method", userDto);
+        if (userDto.getId() == null) {
+            log.error("Given userDto has no id");
+            throw new NullArgumentException("Id of user to update cannot be null");
+        }
+        log.debug("Got userDto {} in updateUser method", userDto);
+        Person storedPerson = userStorage.findById(userDto.getId());
         Person person = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped to userEntity {}", person);
+        person.setVersion(storedPerson.getVersion());
+        log.debug("Mapped to userEntity {}", person);
         person = userStorage.save(person);
-        log.info("Updated user {}", person);
+        log.debug("Updated user {}", person);
         userDto = userMapper.personToUserDto(person);
-        log.info("Mapped userEntity to userDto {}", userDto);
+        log.debug("Mapped userEntity to userDto {}", userDto);
         return userDto;
     }
 
@@ -80,9 +111,9 @@ public class UserServiceLocalStorageImpl implements UserService {
      */
     @Override
     public UserDto getUserById(Long id) {
-        log.info("Got book id {} in getBookById method", id);
+        log.debug("Got book id {} in getBookById method", id);
         Person person = userStorage.findById(id);
-        log.info("Found user {} by id={}", person, id);
+        log.debug("Found user {} by id={}", person, id);
         return userMapper.personToUserDto(person);
     }
 
@@ -92,8 +123,8 @@ public class UserServiceLocalStorageImpl implements UserService {
      */
     @Override
     public void deleteUserById(Long id) {
-        log.info("Got user id {} in deleteUserById method", id);
+        log.debug("Got user id {} in deleteUserById method", id);
         userStorage.deleteById(id);
-        log.info("User with id={} has been deleted", id);
+        log.debug("User with id={} has been deleted", id);
     }
 }
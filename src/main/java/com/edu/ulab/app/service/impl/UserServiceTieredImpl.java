@@ -0,0 +1,140 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.storage.TierPolicy;
+import com.edu.ulab.app.storage.UserStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserServiceTieredImpl keeps hot users in UserStorage in front of database backend,
+ * which is the system of record chosen by facade.tiered-system-of-record.
+ * Reads are served from storage and read through to database on miss.
+ * Writes go to database first and then to storage after commit.
+ * Users read from database are admitted only if no user was changed while they were loaded,
+ * so a read which overlaps a write doesn't put the older value back.
+ */
+@Slf4j
+@Service
+public class UserServiceTieredImpl implements UserService {
+    private final UserService database;
+    private final UserStorage userStorage;
+    private final UserMapper userMapper;
+    private final TierPolicy tierPolicy;
+    /**
+     * Count of applied user mutations, user read from database is admitted only if it didn't change during loading.
+     */
+    private final AtomicLong mutations = new AtomicLong();
+    /**
+     * Guards admission, so a loaded user is checked against mutations and saved before a written one is admitted.
+     */
+    private final Object admission = new Object();
+
+    public UserServiceTieredImpl(Map<String, UserService> userServices,
+                                 UserStorage userStorage,
+                                 UserMapper userMapper,
+                                 StorageProperties storageProperties,
+                                 FacadeProperties facadeProperties) {
+        this.database = facadeProperties.tieredSystemOfRecord(userServices, "user");
+        this.userStorage = userStorage;
+        this.userMapper = userMapper;
+        this.tierPolicy = new TierPolicy(storageProperties.getTier());
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        UserDto createdUser = database.createUser(userDto);
+        TransactionCallbacks.afterCommit(() -> admit(createdUser));
+        return createdUser;
+    }
+
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        List<UserDto> createdUsers = database.createUsers(userDtos);
+        TransactionCallbacks.afterCommit(() -> createdUsers.forEach(this::admit));
+        return createdUsers;
+    }
+
+    /**
+     * Stored user is evicted before update and updated one is admitted after commit,
+     * so reads never see a value which differs from committed one.
+     */
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        evict(userDto.getId());
+        UserDto updatedUser = database.updateUser(userDto);
+        TransactionCallbacks.afterCommit(() -> admit(updatedUser));
+        return updatedUser;
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        Person person = userStorage.findIfPresent(id);
+        if (person != null) {
+            tierPolicy.touch(id);
+            log.debug("User with id={} found in hot tier", id);
+            return userMapper.personToUserDto(person);
+        }
+        long mutationsBeforeLoad = mutations.get();
+        UserDto userDto = database.getUserById(id);
+        TransactionCallbacks.afterCommit(() -> admitLoaded(userDto, mutationsBeforeLoad));
+        return userDto;
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        evict(id);
+        database.deleteUserById(id);
+        TransactionCallbacks.afterCommit(() -> evict(id));
+    }
+
+    /**
+     * Admit written user.
+     */
+    private void admit(UserDto userDto) {
+        synchronized (admission) {
+            mutations.incrementAndGet();
+            store(userDto);
+        }
+    }
+
+    /**
+     * Admit user read from database, if no user was changed since it was loaded.
+     */
+    private void admitLoaded(UserDto userDto, long mutationsBeforeLoad) {
+        synchronized (admission) {
+            if (mutations.get() == mutationsBeforeLoad) {
+                store(userDto);
+            }
+        }
+    }
+
+    /**
+     * Put user into storage, if policy admits it. Otherwise stored value is removed,
+     * so an older one doesn't stay in storage. Called while holding admission.
+     */
+    private void store(UserDto userDto) {
+        List<Long> evicted = tierPolicy.admit(userDto.getId(), false);
+        if (evicted == null) {
+            userStorage.evict(userDto.getId());
+            return;
+        }
+        userStorage.save(userMapper.userDtoToPerson(userDto));
+        evicted.forEach(userStorage::evict);
+    }
+
+    private void evict(Long id) {
+        mutations.incrementAndGet();
+        tierPolicy.remove(id);
+        userStorage.evict(id);
+    }
+}
@@ -0,0 +1,109 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.NullArgumentException;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.repository.WriteBehindFlusher;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.storage.UserStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * UserServiceWriteBehindImpl acknowledges writes once they are in UserStorage
+ * and writes them to database in background with WriteBehindFlusher.
+ * Storage is changed only after the write has got place in flusher's queue, so rejected write changes nothing.
+ * Storage keeps users, which are not flushed yet, reads fall back to database on miss.
+ */
+@Slf4j
+@Service
+public class UserServiceWriteBehindImpl implements UserService {
+    private final UserServiceImpl database;
+    private final UserStorage userStorage;
+    private final UserMapper userMapper;
+    private final WriteBehindFlusher flusher;
+
+    public UserServiceWriteBehindImpl(UserServiceImpl database,
+                                      UserStorage userStorage,
+                                      UserMapper userMapper,
+                                      WriteBehindFlusher flusher) {
+        this.database = database;
+        this.userStorage = userStorage;
+        this.userMapper = userMapper;
+        this.flusher = flusher;
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        if (userDto == null) {
+            log.error("Given userDto is null");
+            throw new NullArgumentException("UserDto cannot be null");
+        }
+        return save(userMapper.userDtoToPerson(userDto));
+    }
+
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        if (userDtos == null) {
+            log.error("Given list of userDtos is null");
+            throw new NullArgumentException("List of userDtos cannot be null");
+        }
+        return userDtos.stream()
+                .map(this::createUser)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * User must exist in storage or in database, updated user is buffered in storage.
+     * Buffered user is replaced only if he has the version which was read,
+     * so concurrent update fails with OptimisticLockingFailureException.
+     */
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        if (userDto == null) {
+            log.error("Given userDto is null");
+            throw new NullArgumentException("UserDto cannot be null");
+        }
+        Person bufferedPerson = userStorage.findIfPresent(userDto.getId());
+        if (bufferedPerson == null) {
+            getUserById(userDto.getId());
+        }
+        Person person = userMapper.userDtoToPerson(userDto);
+        person.setVersion(bufferedPerson == null ? null : bufferedPerson.getVersion());
+        return save(person);
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        Person person = userStorage.findIfPresent(id);
+        if (person != null) {
+            log.debug("User with id={} found in write-behind buffer", id);
+            return userMapper.personToUserDto(person);
+        }
+        if (flusher.isPersonDeletePending(id)) {
+            log.error("User with id={} is deleted", id);
+            throw new NotFoundException("User with id: " + id + " not found");
+        }
+        return database.getUserById(id);
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        if (userStorage.findIfPresent(id) == null) {
+            getUserById(id);
+        }
+        flusher.deletePerson(id, () -> userStorage.evict(id));
+        log.debug("User with id={} has been deleted", id);
+    }
+
+    private UserDto save(Person person) {
+        Person savedPerson = flusher.savePerson(() -> userStorage.save(person));
+        log.debug("Buffered user {}", savedPerson);
+        return userMapper.personToUserDto(savedPerson);
+    }
+}
@@ -0,0 +1,38 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.entity.Book;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.edu.ulab.app.storage.EntityCodec.readNullableLong;
+import static com.edu.ulab.app.storage.EntityCodec.readNullableString;
+import static com.edu.ulab.app.storage.EntityCodec.writeNullableLong;
+import static com.edu.ulab.app.storage.EntityCodec.writeNullableString;
+
+class BookCodec implements EntityCodec<Book> {
+
+    @Override
+    public void write(Book book, DataOutput out) throws IOException {
+        writeNullableLong(out, book.getId());
+        writeNullableLong(out, book.getUserId());
+        writeNullableString(out, book.getTitle());
+        writeNullableString(out, book.getAuthor());
+        writeNullableLong(out, book.getPageCount());
+        writeNullableLong(out, book.getVersion());
+    }
+
+    @Override
+    public Book read(DataInput in) throws IOException {
+        Book book = Book.builder()
+                .id(readNullableLong(in))
+                .userId(readNullableLong(in))
+                .title(readNullableString(in))
+                .author(readNullableString(in))
+                .pageCount(readNullableLong(in))
+                .build();
+        book.setVersion(readNullableLong(in));
+        return book;
+    }
+}
@@ -0,0 +1,310 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.entity.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * BookSearchIndex is in-memory inverted index over title and author of books.
+ * Text is split to lower case tokens, every token is indexed with its prefixes of length
+ * MIN_PREFIX..MAX_PREFIX, so a query term matches tokens which start with it.
+ * Query terms are combined with AND, matched books are ranked by score:
+ * exact match is worth more than prefix match, title is worth more than author.
+ * Index is updated incrementally. Add and remove of a book change its postings inside compute of its document,
+ * so updates of the same book are serialized and never leave postings of a replaced document.
+ * Book with version doesn't replace indexed one with the same or newer version,
+ * so an update applied late doesn't bring older title back. Book without version always replaces indexed one.
+ */
+public class BookSearchIndex {
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int MIN_PREFIX = 2;
+    private static final int MAX_PREFIX = 12;
+    private static final double TITLE_EXACT = 3.0;
+    private static final double TITLE_PREFIX = 2.0;
+    private static final double AUTHOR_EXACT = 1.5;
+    private static final double AUTHOR_PREFIX = 1.0;
+    /**
+     * Order of search results: higher score first, lower id first among equal scores.
+     */
+    public static final Comparator<Hit> RANK = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingLong(hit -> hit.book().getId());
+
+    /**
+     * Key is token or prefix of token, value is ids of books with matching token.
+     */
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> bookIdsByUserId = new ConcurrentHashMap<>();
+
+    /**
+     * Add new book or replace indexed one with the same id, unless indexed one is not older.
+     */
+    public void add(Book book) {
+        documents.compute(book.getId(), (bookId, previous) -> {
+            if (previous != null && !isNewer(book, previous.book())) {
+                return previous;
+            }
+            Document document = new Document(copyOf(book), tokenize(book.getTitle()), tokenize(book.getAuthor()));
+            Set<String> previousKeys = previous == null ? Set.of() : previous.keys();
+            Set<String> keys = document.keys();
+            previousKeys.stream().filter(key -> !keys.contains(key)).forEach(key -> removePosting(key, bookId));
+            keys.stream().filter(key -> !previousKeys.contains(key)).forEach(key -> addPosting(key, bookId));
+            if (previous != null) {
+                removePosting(bookIdsByUserId, previous.book().getUserId(), bookId);
+            }
+            addPosting(bookIdsByUserId, book.getUserId(), bookId);
+            return document;
+        });
+    }
+
+    /**
+     * Remove book if it is indexed.
+     */
+    public void remove(long bookId) {
+        documents.computeIfPresent(bookId, (id, document) -> {
+            document.keys().forEach(key -> removePosting(key, bookId));
+            removePosting(bookIdsByUserId, document.book().getUserId(), bookId);
+            return null;
+        });
+    }
+
+    /**
+     * Remove all books of user.
+     * @return count of removed books.
+     */
+    public int removeAllByUserId(Long userId) {
+        Set<Long> bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            return 0;
+        }
+        List<Long> removed = List.copyOf(bookIds);
+        removed.forEach(this::remove);
+        return removed.size();
+    }
+
+    /**
+     * @return indexed copy of book or null.
+     */
+    public Book get(long bookId) {
+        Document document = documents.get(bookId);
+        return document == null ? null : document.book();
+    }
+
+    /**
+     * Find books, which match all terms of query, best first.
+     * Only offset + limit best books are kept while candidates are ranked, the sum saturates at Integer.MAX_VALUE.
+     * @param query terms separated by spaces or punctuation.
+     * @param offset count of best books to skip, negative offset is taken as 0.
+     * @param limit max count of books.
+     * @return matched books with their scores.
+     */
+    public List<Hit> search(String query, int offset, int limit) {
+        String[] terms = tokenize(query);
+        offset = Math.max(offset, 0);
+        if (terms.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        List<Set<Long>> candidates = candidatesOf(terms);
+        if (candidates == null) {
+            return List.of();
+        }
+        int keep = saturatedSum(offset, limit);
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(keep, candidates.get(0).size()) + 1, RANK.reversed());
+        for (Long bookId : candidates.get(0)) {
+            if (!containsAll(candidates, bookId)) {
+                continue;
+            }
+            Document document = documents.get(bookId);
+            if (document == null) {
+                continue;
+            }
+            double score = document.score(terms);
+            if (score == 0) {
+                continue;
+            }
+            best.add(new Hit(document.book(), score));
+            if (best.size() > keep) {
+                best.poll();
+            }
+        }
+        List<Hit> ranked = new ArrayList<>(best);
+        ranked.sort(RANK);
+        return ranked.size() <= offset ? List.of() : ranked.subList(offset, ranked.size());
+    }
+
+    /**
+     * @return a + b of non-negative ints or Integer.MAX_VALUE if it overflows.
+     */
+    public static int saturatedSum(int a, int b) {
+        return (int) Math.min((long) a + b, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return count of indexed books.
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * @return count of posting keys, every key has at least one book.
+     */
+    int keyCount() {
+        return postings.size();
+    }
+
+    /**
+     * Posting sets of terms, the smallest one is the first, or null if some term matches nothing.
+     */
+    private List<Set<Long>> candidatesOf(String[] terms) {
+        List<Set<Long>> candidates = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            Set<Long> bookIds = postings.get(keyOf(term));
+            if (bookIds == null) {
+                return null;
+            }
+            candidates.add(bookIds);
+        }
+        candidates.sort(Comparator.comparingInt(Set::size));
+        return candidates;
+    }
+
+    private static boolean containsAll(List<Set<Long>> candidates, Long bookId) {
+        for (int i = 1; i < candidates.size(); i++) {
+            if (!candidates.get(i).contains(bookId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addPosting(String key, long bookId) {
+        addPosting(postings, key, bookId);
+    }
+
+    private void removePosting(String key, long bookId) {
+        removePosting(postings, key, bookId);
+    }
+
+    private static <K> void addPosting(Map<K, Set<Long>> index, K key, long bookId) {
+        if (key == null) {
+            return;
+        }
+        index.compute(key, (k, bookIds) -> {
+            if (bookIds == null) {
+                bookIds = ConcurrentHashMap.newKeySet();
+            }
+            bookIds.add(bookId);
+            return bookIds;
+        });
+    }
+
+    private static <K> void removePosting(Map<K, Set<Long>> index, K key, long bookId) {
+        if (key == null) {
+            return;
+        }
+        index.computeIfPresent(key, (k, bookIds) -> {
+            bookIds.remove(bookId);
+            return bookIds.isEmpty() ? null : bookIds;
+        });
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        return Arrays.stream(SEPARATORS.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Posting key of query term: the term itself if it is shorter than MIN_PREFIX,
+     * otherwise its prefix of at most MAX_PREFIX characters. Longer terms are checked in score.
+     */
+    private static String keyOf(String term) {
+        return term.length() > MAX_PREFIX ? term.substring(0, MAX_PREFIX) : term;
+    }
+
+    /**
+     * @return true if book has to replace indexed one: one of them has no version or book's version is greater.
+     */
+    private static boolean isNewer(Book book, Book indexed) {
+        return book.getVersion() == null || indexed.getVersion() == null || book.getVersion() > indexed.getVersion();
+    }
+
+    /**
+     * Index keeps its own copy, so later changes of saved entity don't affect postings.
+     */
+    private static Book copyOf(Book book) {
+        Book copy = new Book(book.getId(), book.getUserId(), book.getTitle(), book.getAuthor(), book.getPageCount());
+        copy.setVersion(book.getVersion());
+        return copy;
+    }
+
+    /**
+     * Matched book and its score.
+     */
+    public record Hit(Book book, double score) {
+    }
+
+    private record Document(Book book, String[] titleTokens, String[] authorTokens) {
+
+        Set<String> keys() {
+            Set<String> keys = new HashSet<>();
+            addKeys(keys, titleTokens);
+            addKeys(keys, authorTokens);
+            return keys;
+        }
+
+        /**
+         * Sum of the best match of every term, 0 if some term matches nothing.
+         */
+        double score(String[] terms) {
+            double score = 0;
+            for (String term : terms) {
+                double termScore = Math.max(
+                        match(titleTokens, term, TITLE_EXACT, TITLE_PREFIX),
+                        match(authorTokens, term, AUTHOR_EXACT, AUTHOR_PREFIX));
+                if (termScore == 0) {
+                    return 0;
+                }
+                score += termScore;
+            }
+            return score;
+        }
+
+        private static double match(String[] tokens, String term, double exact, double prefix) {
+            double best = 0;
+            for (String token : tokens) {
+                if (token.equals(term)) {
+                    return exact;
+                }
+                if (term.length() >= MIN_PREFIX && token.startsWith(term)) {
+                    best = prefix;
+                }
+            }
+            return best;
+        }
+
+        private static void addKeys(Set<String> keys, String[] tokens) {
+            for (String token : tokens) {
+                keys.add(keyOf(token));
+                for (int length = MIN_PREFIX; length < Math.min(token.length(), MAX_PREFIX); length++) {
+                    keys.add(token.substring(0, length));
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package com.edu.ulab.app.storage;
 
+import com.edu.ulab.app.config.IdAllocatorConfig;
+import com.edu.ulab.app.config.StorageProperties;
 import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.repository.IdAllocator;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * BookStorage class is a component, which extends abstract Storage class.
@@ -12,11 +23,55 @@ import java.util.stream.Collectors;
  */
 @Component
 public class BookStorage extends Storage<Book, Long> {
+    /**
+     * bookIdsByUserId is secondary index userId -> ids of user's books, ids are sorted.
+     * It is updated under book's lock together with the backend.
+     */
+    private final Map<Long, NavigableSet<Long>> bookIdsByUserId = new ConcurrentHashMap<>();
+    /**
+     * searchIndex is full text index over title and author, it is updated under book's lock too.
+     */
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+
+    public BookStorage(StorageProperties storageProperties,
+                       @Qualifier(IdAllocatorConfig.BOOK_ID_ALLOCATOR) IdAllocator idAllocator) {
+        super(StorageBackend.create(storageProperties, new BookCodec()),
+                StorageJournal.create(storageProperties, "book", new BookCodec()),
+                idAllocator);
+    }
+
     @Override
     public Book findById(Long id) {
         return super.findById(id);
     }
 
+    /**
+     * @param id entity's id.
+     * @return entity or null, if storage doesn't have it.
+     */
+    public Book findIfPresent(Long id) {
+        return lookup(id);
+    }
+
+    /**
+     * Remove entity if storage has it.
+     * @param id entity's id.
+     * @return true if entity was removed.
+     */
+    public boolean evict(Long id) {
+        return deleteAllById(List.of(id)) > 0;
+    }
+
+    /**
+     * Remove entity if storage has it with given version, newer entity is kept.
+     * @param id entity's id.
+     * @param version version of entity, which may be removed.
+     * @return true if entity was removed.
+     */
+    public boolean evict(Long id, Long version) {
+        return deleteIf(id, stored -> Objects.equals(stored.getVersion(), version));
+    }
+
     @Override
     public Book save(Book object) {
         return super.save(object);
@@ -28,20 +83,120 @@ public class BookStorage extends Storage<Book, Long> {
     }
 
     /**
-     * Firstly, it finds all books in storage and then filter them by userId
+     * Looks up ids of user's books in the index and then gets books from the backend.
      * @param id userId
      * @return List of books where userId equals to id in param
      */
     public List<Book> findAllByUserId(Long id){
-        List<Book> allBooks = findAll();
-        List<Book> userBooks = allBooks.stream()
-                .filter(book -> book.getUserId().equals(id))
+        Set<Long> bookIds = bookIdsByUserId.get(id);
+        if (bookIds == null) {
+            return List.of();
+        }
+        return bookIds.stream()
+                .map(this::lookup)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
-        return userBooks;
+    }
+
+    /**
+     * Looks up ids of user's books in the index only.
+     * @param userId userId
+     * @return List of ids of books where userId equals to userId in param
+     */
+    public List<Long> findIdsByUserId(Long userId) {
+        Set<Long> bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            return List.of();
+        }
+        return List.copyOf(bookIds);
+    }
+
+    /**
+     * Looks up page of ids of user's books in the index only.
+     * @param userId userId
+     * @param afterId page starts after this id
+     * @param limit max count of ids
+     * @return ids of user's books in ascending order
+     */
+    public List<Long> findIdsByUserId(Long userId, long afterId, int limit) {
+        NavigableSet<Long> bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            return List.of();
+        }
+        return bookIds.tailSet(afterId, false).stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Search books by title and author in the full text index.
+     * @param query terms, every one must match a word or start of a word.
+     * @param offset count of best books to skip.
+     * @param limit max count of books.
+     * @return matched books, best first.
+     */
+    public List<BookSearchIndex.Hit> search(String query, int offset, int limit) {
+        return searchIndex.search(query, offset, limit);
+    }
+
+    /**
+     * Delete all user's books found by the index.
+     * @param userId id of books' owner.
+     * @return count of deleted books.
+     */
+    public int deleteAllByUserId(Long userId) {
+        Set<Long> bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            return 0;
+        }
+        return deleteAllById(List.copyOf(bookIds));
     }
 
     @Override
     List<Book> findAll() {
         return super.findAll();
     }
+
+    @Override
+    public Stream<Book> scan() {
+        return super.scan();
+    }
+
+    @Override
+    protected void afterSave(Book previous, Book saved) {
+        if (previous != null && !Objects.equals(previous.getUserId(), saved.getUserId())) {
+            removeFromIndex(previous.getUserId(), previous.getId());
+        }
+        addToIndex(saved.getUserId(), saved.getId());
+        searchIndex.add(saved);
+    }
+
+    @Override
+    protected void afterDelete(Book removed) {
+        removeFromIndex(removed.getUserId(), removed.getId());
+        searchIndex.remove(removed.getId());
+    }
+
+    private void addToIndex(Long userId, Long bookId) {
+        if (userId == null) {
+            return;
+        }
+        bookIdsByUserId.compute(userId, (key, bookIds) -> {
+            if (bookIds == null) {
+                bookIds = new ConcurrentSkipListSet<>();
+            }
+            bookIds.add(bookId);
+            return bookIds;
+        });
+    }
+
+    private void removeFromIndex(Long userId, Long bookId) {
+        if (userId == null) {
+            return;
+        }
+        bookIdsByUserId.computeIfPresent(userId, (key, bookIds) -> {
+            bookIds.remove(bookId);
+            return bookIds.isEmpty() ? null : bookIds;
+        });
+    }
 }
@@ -0,0 +1,36 @@
+package com.edu.ulab.app.storage;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConcurrentMapBackend keeps entities in ConcurrentHashMap with boxed keys.
+ */
+class ConcurrentMapBackend<T> implements StorageBackend<T> {
+    private final ConcurrentHashMap<Long, T> map = new ConcurrentHashMap<>();
+
+    @Override
+    public T get(long id) {
+        return map.get(id);
+    }
+
+    @Override
+    public T put(long id, T value) {
+        return map.put(id, value);
+    }
+
+    @Override
+    public T remove(long id) {
+        return map.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return map.values().iterator();
+    }
+}
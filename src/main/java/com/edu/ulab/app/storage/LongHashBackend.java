@@ -0,0 +1,319 @@
+package com.edu.ulab.app.storage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * LongHashBackend is open addressing hash map with primitive long keys.
+ * Entry costs one long and one reference in arrays instead of Long and HashMap.Node objects.
+ * Table is split into segments, each one is guarded by its own StampedLock,
+ * gets are lock-free optimistic reads which fall back to read lock on concurrent change.
+ * Collisions are resolved by linear probing, removal shifts entries back, so there are no tombstones.
+ */
+class LongHashBackend<T> implements StorageBackend<T> {
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+    private static final int MAX_FILL_PERCENT = 60;
+
+    private final Segment[] segments;
+
+    LongHashBackend() {
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public T get(long id) {
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        Object value = segment.find(id, hash);
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                value = segment.find(id, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return cast(value);
+    }
+
+    @Override
+    public T put(long id, T value) {
+        Objects.requireNonNull(value);
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return cast(segment.put(id, hash, value));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace value only if it is expected one.
+     * @return true if value has been replaced.
+     */
+    boolean replace(long id, T expected, T value) {
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            if (!Objects.equals(segment.find(id, hash), expected)) {
+                return false;
+            }
+            segment.put(id, hash, value);
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public T remove(long id) {
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return cast(segment.remove(id, hash));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Iterates segment by segment, values of one segment are taken under its read lock,
+     * so at most one segment is copied at a time.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int nextSegment;
+            private Object[] batch = new Object[0];
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position == batch.length) {
+                    if (nextSegment == segments.length) {
+                        return false;
+                    }
+                    batch = segments[nextSegment++].values();
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cast(batch[position++]);
+            }
+        };
+    }
+
+    /**
+     * Iterates keys the same way as iterator() iterates values.
+     */
+    PrimitiveIterator.OfLong keyIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int nextSegment;
+            private long[] batch = new long[0];
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position == batch.length) {
+                    if (nextSegment == segments.length) {
+                        return false;
+                    }
+                    batch = segments[nextSegment++].keys();
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch[position++];
+            }
+        };
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 40) & (segments.length - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Segment is a part of the table, slot is free if its value is null.
+     */
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private Object[] values = new Object[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        /**
+         * Could be called without lock, so arrays are read once and probing is bounded.
+         */
+        Object find(long key, long hash) {
+            long[] keys = this.keys;
+            Object[] values = this.values;
+            if (keys.length != values.length) {
+                return null;
+            }
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            for (int probe = 0; probe <= mask; probe++) {
+                Object value = values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        Object put(long key, long hash, Object value) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    Object previous = values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 100 > values.length * MAX_FILL_PERCENT) {
+                resize();
+            }
+            return null;
+        }
+
+        Object remove(long key, long hash) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            Object removed = values[slot];
+            if (removed == null) {
+                return null;
+            }
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    break;
+                }
+                int home = (int) hash(keys[next]) & mask;
+                boolean staysInPlace = gap <= next
+                        ? gap < home && home <= next
+                        : gap < home || home <= next;
+                if (!staysInPlace) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0L;
+            values[gap] = null;
+            size--;
+            return removed;
+        }
+
+        Object[] values() {
+            long stamp = lock.readLock();
+            try {
+                Object[] result = new Object[size];
+                int count = 0;
+                for (Object value : values) {
+                    if (value != null) {
+                        result[count++] = value;
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long[] keys() {
+            long stamp = lock.readLock();
+            try {
+                long[] result = new long[size];
+                int count = 0;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        result[count++] = keys[i];
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] newKeys = new long[oldKeys.length << 1];
+            Object[] newValues = new Object[oldValues.length << 1];
+            int mask = newValues.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) hash(oldKeys[i]) & mask;
+                    while (newValues[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = oldKeys[i];
+                    newValues[slot] = oldValues[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.edu.ulab.app.storage;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * LongLongHashMap is open addressing hash map with primitive long keys and non-negative long values.
+ * It has the layout of LongHashBackend, but values are kept in long array too, so entry costs two longs
+ * and nothing is boxed.
+ * Table is split into segments, each one is guarded by its own StampedLock,
+ * gets are lock-free optimistic reads which fall back to read lock on concurrent change.
+ * Slot is free if its value is NO_VALUE, removal shifts entries back, so there are no tombstones.
+ */
+class LongLongHashMap {
+    /**
+     * Value returned for missing keys, it can't be put in the map.
+     */
+    static final long NO_VALUE = -1L;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+    private static final int MAX_FILL_PERCENT = 60;
+
+    private final Segment[] segments;
+
+    LongLongHashMap() {
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * @return value of key or NO_VALUE.
+     */
+    long get(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        long value = segment.find(key, hash);
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                value = segment.find(key, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param value non-negative value.
+     * @return replaced value or NO_VALUE.
+     */
+    long put(long key, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.put(key, hash, value);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace value only if it is expected one.
+     * @return true if value has been replaced.
+     */
+    boolean replace(long key, long expected, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            if (segment.find(key, hash) != expected || expected == NO_VALUE) {
+                return false;
+            }
+            segment.put(key, hash, value);
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return removed value or NO_VALUE.
+     */
+    long remove(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(key, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Iterates segment by segment, keys of one segment are taken under its read lock,
+     * so at most one segment is copied at a time.
+     */
+    PrimitiveIterator.OfLong keyIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int nextSegment;
+            private long[] batch = new long[0];
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position == batch.length) {
+                    if (nextSegment == segments.length) {
+                        return false;
+                    }
+                    batch = segments[nextSegment++].keys();
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch[position++];
+            }
+        };
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 40) & (segments.length - 1)];
+    }
+
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static long[] freeSlots(int capacity) {
+        long[] values = new long[capacity];
+        Arrays.fill(values, NO_VALUE);
+        return values;
+    }
+
+    /**
+     * Segment is a part of the table.
+     */
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private long[] values = freeSlots(INITIAL_SEGMENT_CAPACITY);
+        private int size;
+
+        /**
+         * Could be called without lock, so arrays are read once and probing is bounded.
+         */
+        long find(long key, long hash) {
+            long[] keys = this.keys;
+            long[] values = this.values;
+            if (keys.length != values.length) {
+                return NO_VALUE;
+            }
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            for (int probe = 0; probe <= mask; probe++) {
+                long value = values[slot];
+                if (value == NO_VALUE) {
+                    return NO_VALUE;
+                }
+                if (keys[slot] == key) {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NO_VALUE;
+        }
+
+        long put(long key, long hash, long value) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != NO_VALUE) {
+                if (keys[slot] == key) {
+                    long previous = values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 100 > values.length * MAX_FILL_PERCENT) {
+                resize();
+            }
+            return NO_VALUE;
+        }
+
+        long remove(long key, long hash) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != NO_VALUE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            long removed = values[slot];
+            if (removed == NO_VALUE) {
+                return NO_VALUE;
+            }
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == NO_VALUE) {
+                    break;
+                }
+                int home = (int) hash(keys[next]) & mask;
+                boolean staysInPlace = gap <= next
+                        ? gap < home && home <= next
+                        : gap < home || home <= next;
+                if (!staysInPlace) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0L;
+            values[gap] = NO_VALUE;
+            size--;
+            return removed;
+        }
+
+        long[] keys() {
+            long stamp = lock.readLock();
+            try {
+                long[] result = new long[size];
+                int count = 0;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != NO_VALUE) {
+                        result[count++] = keys[i];
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            long[] newKeys = new long[oldKeys.length << 1];
+            long[] newValues = freeSlots(oldValues.length << 1);
+            int mask = newValues.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != NO_VALUE) {
+                    int slot = (int) hash(oldKeys[i]) & mask;
+                    while (newValues[slot] != NO_VALUE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = oldKeys[i];
+                    newValues[slot] = oldValues[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+}
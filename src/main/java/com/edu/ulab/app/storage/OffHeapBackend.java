@@ -0,0 +1,244 @@
+package com.edu.ulab.app.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * OffHeapBackend keeps entities serialized by EntityCodec in direct ByteBuffers,
+ * so they are not scanned by GC. Only primitive index id -> record reference stays on heap,
+ * it is LongLongHashMap, so entries are not boxed.
+ * Record is an int length followed by entity bytes, reference is chunk id and offset packed in long.
+ * Records are appended and never overwritten. When replaced records take more space than live ones,
+ * live records are copied to new chunks in background and old chunks are dropped.
+ * Writes of the same id must be serialized by the caller, Storage does it with its striped lock.
+ */
+@Slf4j
+class OffHeapBackend<T> implements StorageBackend<T> {
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final EntityCodec<T> codec;
+    private final int chunkSize;
+    private final LongLongHashMap index = new LongLongHashMap();
+    private final Map<Integer, ByteBuffer> chunks = new ConcurrentHashMap<>();
+    /**
+     * usedBytes keeps number of written bytes of chunks which are full.
+     */
+    private final Map<Integer, Integer> usedBytes = new ConcurrentHashMap<>();
+    /**
+     * dropLock is held for reading from reservation of record until it is referenced by index,
+     * it is taken for writing only by compaction, to wait for such writes and to drop chunks.
+     */
+    private final StampedLock dropLock = new StampedLock();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // guarded by this
+    private int currentChunkId = -1;
+    private ByteBuffer currentChunk;
+    private int position;
+
+    OffHeapBackend(EntityCodec<T> codec, int chunkSize) {
+        this.codec = codec;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public T get(long id) {
+        byte[] bytes = find(id);
+        return bytes == null ? null : codec.decode(bytes);
+    }
+
+    @Override
+    public T put(long id, T value) {
+        byte[] previous = find(id);
+        byte[] bytes = codec.encode(value);
+        long stamp = dropLock.readLock();
+        try {
+            index.put(id, write(bytes));
+        } finally {
+            dropLock.unlockRead(stamp);
+        }
+        liveBytes.addAndGet(LENGTH_BYTES + bytes.length);
+        return release(previous);
+    }
+
+    @Override
+    public T remove(long id) {
+        byte[] previous = find(id);
+        if (previous != null) {
+            index.remove(id);
+        }
+        return release(previous);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        PrimitiveIterator.OfLong ids = index.keyIterator();
+        return new Iterator<>() {
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && ids.hasNext()) {
+                    next = get(ids.nextLong());
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    private T release(byte[] previous) {
+        if (previous == null) {
+            return null;
+        }
+        liveBytes.addAndGet(-(LENGTH_BYTES + previous.length));
+        maybeCompact();
+        return codec.decode(previous);
+    }
+
+    private byte[] find(long id) {
+        long stamp = dropLock.tryOptimisticRead();
+        byte[] bytes = lookup(id);
+        if (!dropLock.validate(stamp)) {
+            stamp = dropLock.readLock();
+            try {
+                bytes = lookup(id);
+            } finally {
+                dropLock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private byte[] lookup(long id) {
+        long reference = index.get(id);
+        return reference == LongLongHashMap.NO_VALUE ? null : read(reference);
+    }
+
+    private byte[] read(long reference) {
+        ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) reference;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + LENGTH_BYTES, bytes);
+        return bytes;
+    }
+
+    private long write(byte[] bytes) {
+        int recordSize = LENGTH_BYTES + bytes.length;
+        if (recordSize > chunkSize) {
+            throw new IllegalArgumentException("Entity of " + bytes.length + " bytes does not fit in off-heap chunk");
+        }
+        ByteBuffer chunk;
+        int chunkId;
+        int offset;
+        synchronized (this) {
+            if (currentChunk == null || position + recordSize > chunkSize) {
+                newChunk();
+            }
+            chunk = currentChunk;
+            chunkId = currentChunkId;
+            offset = position;
+            position += recordSize;
+        }
+        chunk.putInt(offset, bytes.length);
+        chunk.put(offset + LENGTH_BYTES, bytes);
+        allocatedBytes.addAndGet(recordSize);
+        return ((long) chunkId << 32) | offset;
+    }
+
+    // called while holding this
+    private void newChunk() {
+        if (currentChunk != null) {
+            usedBytes.put(currentChunkId, position);
+        }
+        currentChunk = ByteBuffer.allocateDirect(chunkSize);
+        currentChunkId++;
+        chunks.put(currentChunkId, currentChunk);
+        position = 0;
+    }
+
+    private void maybeCompact() {
+        long garbage = allocatedBytes.get() - liveBytes.get();
+        if (garbage > Math.max(liveBytes.get(), chunkSize) && compacting.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::compact)
+                    .whenComplete((result, error) -> {
+                        compacting.set(false);
+                        if (error != null) {
+                            log.error("Off-heap storage compaction failed", error);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Copies live records from all full chunks to new ones and drops old chunks.
+     * Record which is replaced concurrently keeps its new reference, the copy becomes garbage.
+     * Records reserved in retired chunks before they were retired are indexed before copying starts,
+     * later writes go to new chunks.
+     */
+    private void compact() {
+        Set<Integer> retired;
+        synchronized (this) {
+            newChunk();
+            retired = new HashSet<>(usedBytes.keySet());
+        }
+        dropLock.unlockWrite(dropLock.writeLock());
+        long stamp = dropLock.readLock();
+        try {
+            PrimitiveIterator.OfLong ids = index.keyIterator();
+            while (ids.hasNext()) {
+                long id = ids.nextLong();
+                long reference = index.get(id);
+                if (reference != LongLongHashMap.NO_VALUE && retired.contains((int) (reference >>> 32))) {
+                    byte[] bytes = read(reference);
+                    if (bytes != null) {
+                        index.replace(id, reference, write(bytes));
+                    }
+                }
+            }
+        } finally {
+            dropLock.unlockRead(stamp);
+        }
+        stamp = dropLock.writeLock();
+        try {
+            for (Integer chunkId : retired) {
+                chunks.remove(chunkId);
+                allocatedBytes.addAndGet(-usedBytes.remove(chunkId));
+            }
+        } finally {
+            dropLock.unlockWrite(stamp);
+        }
+        log.info("Off-heap storage compacted, {} chunks dropped", retired.size());
+    }
+}
@@ -0,0 +1,36 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.entity.Person;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.edu.ulab.app.storage.EntityCodec.readNullableLong;
+import static com.edu.ulab.app.storage.EntityCodec.readNullableString;
+import static com.edu.ulab.app.storage.EntityCodec.writeNullableLong;
+import static com.edu.ulab.app.storage.EntityCodec.writeNullableString;
+
+class PersonCodec implements EntityCodec<Person> {
+
+    @Override
+    public void write(Person person, DataOutput out) throws IOException {
+        writeNullableLong(out, person.getId());
+        writeNullableString(out, person.getFullName());
+        writeNullableString(out, person.getTitle());
+        out.writeInt(person.getAge());
+        writeNullableLong(out, person.getVersion());
+    }
+
+    @Override
+    public Person read(DataInput in) throws IOException {
+        Person person = Person.builder()
+                .id(readNullableLong(in))
+                .fullName(readNullableString(in))
+                .title(readNullableString(in))
+                .age(in.readInt())
+                .build();
+        person.setVersion(readNullableLong(in));
+        return person;
+    }
+}
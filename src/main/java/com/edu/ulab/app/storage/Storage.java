@@ -3,12 +3,34 @@ package com.edu.ulab.app.storage;
 import com.edu.ulab.app.entity.BaseEntity;
 import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
+import com.edu.ulab.app.repository.IdAllocator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract class Storage represents a local memory of the app.
+ * It is safe to use from concurrent requests: values are kept in a thread-safe StorageBackend
+ * and ids are taken from IdAllocator, which is shared with database backends.
+ * Writes of the same id are serialized by a striped lock, so subclasses can keep
+ * their own indexes consistent with the backend in afterSave and afterDelete.
+ * If journal is enabled, writes are logged before they are applied and return after the log is on disk.
+ * <p>
+ * scan() iterates point-in-time snapshot of the storage without copying it.
+ * While there are open snapshots, every write gets a version and remembers the value it replaces,
+ * and deleted entities stay in the backend marked as deleted, so snapshot iteration meets every entity
+ * which existed at snapshot's version and takes the value it had at that time.
+ * When the last snapshot which could see them is closed, old values and deleted entities are dropped.
  *
  * @param <T> is entity class which extends BaseEntity
  * @param <ID> is id for this entity class
@@ -16,20 +38,78 @@ import java.util.*;
 @Slf4j
 public abstract class Storage<T extends BaseEntity, ID extends Long> {
     /**
-     * map is what app uses to do basic operations with data.
+     * backend is what app uses to do basic operations with data.
+     * Single key operations on it are atomic, so save and delete are linearizable.
      */
-    protected Map<Long, T> map = new HashMap<>();
+    protected final StorageBackend<T> backend;
     /**
-     * nextId is value for entity's ids.
+     * idAllocator gives ids for new entities.
      */
-    private Long nextId = 1L;
+    private final IdAllocator idAllocator;
+    /**
+     * locks guard writes, id's lock is locks[stripe(id)].
+     */
+    private final Lock[] locks;
+    /**
+     * journal is write-ahead log of the storage, it is null if durability is disabled.
+     */
+    private final StorageJournal<T> journal;
+    /**
+     * version is increased by every write made while there are open snapshots.
+     */
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * openSnapshots keeps number of open snapshots by their version.
+     */
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    /**
+     * hasOpenSnapshots is set when a snapshot is registered and cleared only while all locks are held.
+     */
+    private volatile boolean hasOpenSnapshots;
+    /**
+     * replaced keeps values which were replaced while snapshots were open, newest first.
+     */
+    private final Map<Long, Replaced<T>> replaced = new ConcurrentHashMap<>();
+    /**
+     * deleted keeps version of deletion of entities, which are still in the backend for open snapshots.
+     */
+    private final Map<Long, Long> deleted = new ConcurrentHashMap<>();
+
+    protected Storage(StorageBackend<T> backend, StorageJournal<T> journal, IdAllocator idAllocator) {
+        this.backend = backend;
+        this.journal = journal;
+        this.idAllocator = idAllocator;
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1;
+        locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
 
     /**
-     * Return all objects in the Map.
-     * @return ArrayList of all values in Map.
+     * Return all objects in the backend.
+     * @return List of all values in backend, taken from one snapshot.
      */
     List<T> findAll() {
-        return new ArrayList<>(map.values());
+        try (Stream<T> all = scan()) {
+            return all.toList();
+        }
+    }
+
+    /**
+     * Lazily iterate consistent point-in-time view of the storage.
+     * Writers are not blocked while the stream is consumed.
+     * Stream must be closed, otherwise replaced values are kept in memory.
+     * @return stream of entities, which were in the storage when scan started.
+     */
+    Stream<T> scan() {
+        long snapshotVersion = openSnapshot();
+        Iterator<T> current = backend.iterator();
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(current, Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false)
+                .map(object -> visibleAt(object, snapshotVersion))
+                .filter(Objects::nonNull)
+                .onClose(() -> closeSnapshot(snapshotVersion));
     }
 
     /**
@@ -40,7 +120,7 @@ public abstract class Storage<T extends BaseEntity, ID extends Long> {
      * @throws NotFoundException if map doesn't have key, which equals id,
      */
     T findById(ID id) {
-        T object = map.get(id);
+        T object = lookup(id);
         if (object == null) {
             log.error("Object with id={} is not found", id);
             throw new NotFoundException("Object  with id: " + id + " not found");
@@ -48,23 +128,57 @@ public abstract class Storage<T extends BaseEntity, ID extends Long> {
         return object;
     }
 
+    /**
+     * @param id entity's id.
+     * @return entity or null, if there is no entity with this id.
+     */
+    protected T lookup(long id) {
+        T object = backend.get(id);
+        if (object != null && !deleted.isEmpty() && deleted.containsKey(id)) {
+            return null;
+        }
+        return object;
+    }
+
     /**
      * Save or Update entity object.
      * Firstly, the method check object id, if id == null,
      * then incremented id generated.
      * Secondly, if map doesn't have this id as a key, it would put a new key-value pair.
      * If the map is already have this one, then it would replace old value with the new one.
+     * If object has version, it must be equal to version of stored entity, saved entity gets next version.
      * @param object is entity we want to save or update.
      * @return saved entity object.
+     * @throws OptimisticLockingFailureException if stored entity has another version.
      */
     T save(T object) {
         if (object != null) {
             if (object.getId() == null) {
                 object.setId(getNextId());
-                log.info("Increment id value");
+                log.debug("Increment id value");
+            }
+            long logPosition = 0;
+            Lock lock = lockFor(object.getId());
+            lock.lock();
+            try {
+                T previous = lookup(object.getId());
+                checkAndIncrementVersion(previous, object);
+                if (journal != null) {
+                    logPosition = journal.appendSave(object);
+                }
+                if (hasOpenSnapshots) {
+                    keepForSnapshots(object.getId(), previous);
+                    deleted.remove(object.getId());
+                }
+                T replacedObject = backend.put(object.getId(), object);
+                afterSave(hasOpenSnapshots ? previous : replacedObject, object);
+            } finally {
+                lock.unlock();
             }
-            map.put(object.getId(), object);
-            log.info("Put id={} and object={} in to the map", object.getId(),object);
+            if (journal != null) {
+                journal.sync(logPosition);
+            }
+            log.debug("Put id={} and object={} in to the map", object.getId(),object);
         } else {
             log.error("Given object is null");
             throw new NullArgumentException("Object cannot be null");
@@ -72,6 +186,20 @@ public abstract class Storage<T extends BaseEntity, ID extends Long> {
         return object;
     }
 
+    /**
+     * Check version of saved object against stored entity and set the next one.
+     * Object without version overwrites stored entity unconditionally.
+     */
+    private void checkAndIncrementVersion(T stored, T object) {
+        Long storedVersion = stored == null ? null : stored.getVersion();
+        if (object.getVersion() != null && !object.getVersion().equals(storedVersion)) {
+            log.warn("Object with id={} has version {}, but stored version is {}",
+                    object.getId(), object.getVersion(), storedVersion);
+            throw new OptimisticLockingFailureException("Object with id: " + object.getId() + " was updated concurrently");
+        }
+        object.setVersion(storedVersion == null ? 0L : storedVersion + 1);
+    }
+
     /**
      * Delete entity from the map by its id.
      *
@@ -79,8 +207,22 @@ public abstract class Storage<T extends BaseEntity, ID extends Long> {
      * @throws NotFoundException if map doesn't have key, which equals id,
      */
     void deleteById(ID id) {
-        T object = map.remove(id);
-        log.info("Object with id={} has been removed from map", id);
+        T object;
+        long logPosition = 0;
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            object = lookup(id);
+            if (object != null) {
+                logPosition = removeLocked(id, object);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (journal != null && object != null) {
+            journal.sync(logPosition);
+        }
+        log.debug("Object with id={} has been removed from map", id);
         if (object == null) {
             log.error("Object with id= {} not found", id);
             throw new NotFoundException("Object with id: " + id + " not found");
@@ -88,11 +230,287 @@ public abstract class Storage<T extends BaseEntity, ID extends Long> {
     }
 
     /**
-     *Increment id.
+     * Delete all entities with given ids, missing ids are skipped.
+     * Journal is synced once for the whole set.
+     *
+     * @param ids ids of entities to delete.
+     * @return count of deleted entities.
+     */
+    protected int deleteAllById(Collection<Long> ids) {
+        int count = 0;
+        long logPosition = 0;
+        for (Long id : ids) {
+            Lock lock = lockFor(id);
+            lock.lock();
+            try {
+                T object = lookup(id);
+                if (object != null) {
+                    logPosition = Math.max(logPosition, removeLocked(id, object));
+                    count++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (journal != null && count > 0) {
+            journal.sync(logPosition);
+        }
+        log.debug("{} objects have been removed from map", count);
+        return count;
+    }
+
+    /**
+     * Delete entity only if it matches the condition, which is tested under entity's lock.
+     *
+     * @param id id of entity to delete.
+     * @param condition is tested against stored entity.
+     * @return true if entity was deleted.
+     */
+    protected boolean deleteIf(Long id, Predicate<T> condition) {
+        boolean removed = false;
+        long logPosition = 0;
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            T object = lookup(id);
+            if (object != null && condition.test(object)) {
+                logPosition = removeLocked(id, object);
+                removed = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (journal != null && removed) {
+            journal.sync(logPosition);
+        }
+        return removed;
+    }
+
+    /**
+     * Log and apply delete, caller holds entity's lock.
+     * @return journal position to sync.
+     */
+    private long removeLocked(long id, T object) {
+        long logPosition = 0;
+        if (journal != null) {
+            logPosition = journal.appendDelete(id);
+        }
+        remove(id, object);
+        afterDelete(object);
+        return logPosition;
+    }
+
+    /**
+     * Restore entities from journal, if it is enabled.
+     * Hooks are called for restored entities, so subclasses rebuild their indexes.
+     * Restored ids are reserved, so they are not handed out again.
+     */
+    @PostConstruct
+    void recover() {
+        if (journal != null) {
+            journal.open(this::restore, this::restoreDeleted, this::scan);
+            try (Stream<T> all = scan()) {
+                all.mapToLong(BaseEntity::getId).max().ifPresent(idAllocator::reserve);
+            }
+        }
+    }
+
+    @PreDestroy
+    void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void restore(T object) {
+        Lock lock = lockFor(object.getId());
+        lock.lock();
+        try {
+            afterSave(backend.put(object.getId(), object), object);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void restoreDeleted(long id) {
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            T object = backend.remove(id);
+            if (object != null) {
+                afterDelete(object);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called after object has been put in to the backend, while id's lock is held.
+     * Stored entities are replaced on update, not changed in place.
+     * @param previous is replaced entity or null if there was no entity with this id.
+     * @param saved is entity which is in the backend now.
+     */
+    protected void afterSave(T previous, T saved) {
+    }
+
+    /**
+     * Called after object has been removed from the backend, while id's lock is held.
+     * @param removed is entity which has been removed.
+     */
+    protected void afterDelete(T removed) {
+    }
+
+    /**
+     * Remember current value of id for open snapshots before it is changed.
+     * Called while id's lock is held and there are open snapshots.
+     * @return version of the write.
+     */
+    private long keepForSnapshots(long id, T current) {
+        long writeVersion = version.incrementAndGet();
+        replaced.compute(id, (key, older) -> new Replaced<>(writeVersion, current, older));
+        return writeVersion;
+    }
+
+    /**
+     * Remove entity, while there are open snapshots it is only marked as deleted.
+     * Called while id's lock is held.
+     */
+    private void remove(long id, T current) {
+        if (hasOpenSnapshots) {
+            deleted.put(id, keepForSnapshots(id, current));
+        } else {
+            backend.remove(id);
+        }
+    }
+
+    private T visibleAt(T current, long snapshotVersion) {
+        Replaced<T> changes = replaced.get(current.getId());
+        Replaced<T> firstAfterSnapshot = null;
+        for (Replaced<T> change = changes; change != null && change.version() > snapshotVersion; change = change.older()) {
+            firstAfterSnapshot = change;
+        }
+        if (firstAfterSnapshot != null) {
+            return firstAfterSnapshot.value();
+        }
+        return deleted.containsKey(current.getId()) ? null : current;
+    }
+
+    /**
+     * Register snapshot without stopping writers.
+     * Writers check hasOpenSnapshots under id's lock, so after the flag is set, one pass over the locks
+     * waits for writes which haven't seen it. Snapshot version is read after that pass, and the second pass
+     * waits for writes which took a version not greater than it, so all writes visible to the snapshot
+     * are in the backend before it is iterated.
+     */
+    private long openSnapshot() {
+        long registeredVersion;
+        synchronized (openSnapshots) {
+            registeredVersion = version.get();
+            openSnapshots.merge(registeredVersion, 1, Integer::sum);
+            hasOpenSnapshots = true;
+        }
+        awaitWriters();
+        long snapshotVersion = version.get();
+        awaitWriters();
+        synchronized (openSnapshots) {
+            openSnapshots.merge(snapshotVersion, 1, Integer::sum);
+            openSnapshots.computeIfPresent(registeredVersion, (key, count) -> count == 1 ? null : count - 1);
+        }
+        return snapshotVersion;
+    }
+
+    /**
+     * Wait for writes, which hold id's lock now, to complete.
+     */
+    private void awaitWriters() {
+        for (Lock lock : locks) {
+            lock.lock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop values and deleted entities, which can't be seen by remaining snapshots.
+     */
+    private void closeSnapshot(long snapshotVersion) {
+        Long oldestVersion;
+        synchronized (openSnapshots) {
+            openSnapshots.computeIfPresent(snapshotVersion, (key, count) -> count == 1 ? null : count - 1);
+            oldestVersion = openSnapshots.isEmpty() ? null : openSnapshots.firstKey();
+        }
+        if (oldestVersion == null) {
+            lockAll();
+            try {
+                synchronized (openSnapshots) {
+                    if (!openSnapshots.isEmpty()) {
+                        return;
+                    }
+                    hasOpenSnapshots = false;
+                }
+                deleted.keySet().forEach(backend::remove);
+                deleted.clear();
+                replaced.clear();
+            } finally {
+                unlockAll();
+            }
+            return;
+        }
+        long oldest = oldestVersion;
+        for (Long id : replaced.keySet()) {
+            replaced.computeIfPresent(id, (key, changes) -> changes.newerThan(oldest));
+        }
+        for (Map.Entry<Long, Long> deletion : deleted.entrySet()) {
+            if (deletion.getValue() <= oldest) {
+                Lock lock = lockFor(deletion.getKey());
+                lock.lock();
+                try {
+                    if (deleted.remove(deletion.getKey(), deletion.getValue())) {
+                        backend.remove(deletion.getKey());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void lockAll() {
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private Lock lockFor(Long id) {
+        int hash = Long.hashCode(id);
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+
+    /**
+     *Take next id from allocator.
      * @return id
      */
     private Long getNextId() {
-        return nextId++;
+        return idAllocator.nextId();
+    }
+
+    /**
+     * Replaced is immutable list of values of one id, which were replaced by writes with given versions.
+     */
+    private record Replaced<T>(long version, T value, Replaced<T> older) {
+
+        Replaced<T> newerThan(long oldestVersion) {
+            if (version <= oldestVersion) {
+                return null;
+            }
+            return new Replaced<>(version, value, older == null ? null : older.newerThan(oldestVersion));
+        }
     }
     //todo создать хранилище в котором будут содержаться данные
     // сделать абстракции через которые можно будет производить операции с хранилищем
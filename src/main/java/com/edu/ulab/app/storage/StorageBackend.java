@@ -0,0 +1,59 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+
+import java.util.Iterator;
+
+/**
+ * StorageBackend is thread-safe structure which keeps Storage entities by their ids.
+ *
+ * @param <T> is entity class
+ */
+public interface StorageBackend<T> {
+
+    /**
+     * @param id entity's id.
+     * @return entity with this id or null.
+     */
+    T get(long id);
+
+    /**
+     * Put entity with given id, replacing the previous one.
+     * @param id entity's id.
+     * @param value entity.
+     * @return replaced entity or null.
+     */
+    T put(long id, T value);
+
+    /**
+     * @param id entity's id.
+     * @return removed entity or null.
+     */
+    T remove(long id);
+
+    /**
+     * @return approximate number of entities.
+     */
+    int size();
+
+    /**
+     * Weakly consistent iterator: entities which are present during the whole iteration
+     * are returned exactly once, concurrent changes may be reflected or not.
+     * @return iterator over all entities.
+     */
+    Iterator<T> iterator();
+
+    /**
+     * Creates backend which is configured in storage properties.
+     * @param storageProperties local storage settings.
+     * @param codec is used by backends which keep entities serialized.
+     * @return new empty backend.
+     */
+    static <T> StorageBackend<T> create(StorageProperties storageProperties, EntityCodec<T> codec) {
+        return switch (storageProperties.getBackend()) {
+            case CONCURRENT_MAP -> new ConcurrentMapBackend<>();
+            case PRIMITIVE -> new LongHashBackend<>();
+            case OFF_HEAP -> new OffHeapBackend<>(codec, (int) storageProperties.getOffHeapChunkSize().toBytes());
+        };
+    }
+}
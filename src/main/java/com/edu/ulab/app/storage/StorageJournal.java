@@ -0,0 +1,330 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.BaseEntity;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * StorageJournal makes local storage durable.
+ * Every save and delete is appended to memory-mapped log segment before it is applied to the backend.
+ * Callers wait for fsync with sync(position), the first waiting thread forces the segment
+ * for all records appended so far, so concurrent writers share one fsync.
+ * Periodically all entities are written to snapshot and log segments before it are deleted.
+ * On startup storage is restored from the last snapshot and the log tail.
+ * <p>
+ * Log record is: int body length, body (byte operation, long id, entity bytes), int crc32 of body.
+ * Zero length or wrong crc marks the end of the segment.
+ *
+ * @param <T> is entity class which extends BaseEntity
+ */
+@Slf4j
+public class StorageJournal<T extends BaseEntity> {
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int SNAPSHOT_MAGIC = 0x534E4150;
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private final Path directory;
+    private final String name;
+    private final EntityCodec<T> codec;
+    private final int segmentSize;
+    private final long snapshotIntervalMillis;
+    private final Lock syncLock = new ReentrantLock();
+    private final AtomicLong durable = new AtomicLong();
+    private ScheduledExecutorService snapshotScheduler;
+
+    // guarded by this
+    private long segmentNumber;
+    private MappedByteBuffer segment;
+    private long appended;
+
+    StorageJournal(StorageProperties.Journal properties, String name, EntityCodec<T> codec) {
+        this.directory = properties.getDirectory();
+        this.name = name;
+        this.codec = codec;
+        this.segmentSize = (int) properties.getSegmentSize().toBytes();
+        this.snapshotIntervalMillis = properties.getSnapshotInterval().toMillis();
+    }
+
+    /**
+     * @return journal for storage with given name or null if journal is disabled.
+     */
+    static <T extends BaseEntity> StorageJournal<T> create(StorageProperties storageProperties,
+                                                          String name,
+                                                          EntityCodec<T> codec) {
+        StorageProperties.Journal properties = storageProperties.getJournal();
+        return properties.isEnabled() ? new StorageJournal<>(properties, name, codec) : null;
+    }
+
+    /**
+     * Restore entities from snapshot and log, then open new log segment and start taking snapshots.
+     * @param restore is called for every saved entity in order.
+     * @param restoreDelete is called for every deleted id in order.
+     * @param entities supplies consistent stream of current entities for snapshots.
+     */
+    synchronized void open(Consumer<T> restore, LongConsumer restoreDelete, Supplier<Stream<T>> entities) {
+        try {
+            Files.createDirectories(directory);
+            long replayFrom = readSnapshot(restore);
+            long lastSegment = replayFrom - 1;
+            for (Path segmentPath : segments()) {
+                long number = segmentNumber(segmentPath);
+                if (number < replayFrom) {
+                    Files.delete(segmentPath);
+                } else {
+                    replay(segmentPath, restore, restoreDelete);
+                    lastSegment = number;
+                }
+            }
+            segmentNumber = lastSegment;
+            newSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover " + name + " storage from " + directory, e);
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> snapshot(entities),
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Storage {} recovered from {}", name, directory);
+    }
+
+    /**
+     * @return log position which should be passed to sync.
+     */
+    long appendSave(T entity) {
+        return append(SAVE, entity.getId(), codec.encode(entity));
+    }
+
+    /**
+     * @return log position which should be passed to sync.
+     */
+    long appendDelete(long id) {
+        return append(DELETE, id, new byte[0]);
+    }
+
+    /**
+     * Wait until log is forced to disk up to the position.
+     */
+    void sync(long position) {
+        if (durable.get() >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable.get() >= position) {
+                return;
+            }
+            MappedByteBuffer current;
+            long target;
+            synchronized (this) {
+                current = segment;
+                target = appended;
+            }
+            current.force();
+            durable.accumulateAndGet(target, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Write all entities to snapshot and delete log segments which are covered by it.
+     * Log is rolled first, then entities are taken: the snapshot waits for writes, which were logged
+     * in the rolled segments, so it contains all of them. Writes which go on while entities are iterated
+     * are logged in the new segment and replayed from it on recovery.
+     * Entities are opened outside of the monitor, because writers log while holding their locks.
+     * @param entities supplies consistent stream of current entities, it is called after the log is rolled.
+     */
+    void snapshot(Supplier<Stream<T>> entities) {
+        long replayFrom;
+        synchronized (this) {
+            roll();
+            replayFrom = segmentNumber;
+        }
+        Path temporary = directory.resolve(name + ".snapshot.tmp");
+        try {
+            try (Stream<T> stream = entities.get();
+                 FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(replayFrom);
+                long count = 0;
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    byte[] bytes = codec.encode(iterator.next());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    count++;
+                }
+                out.writeInt(-1);
+                out.flush();
+                channel.force(true);
+                log.info("Snapshot of {} storage with {} entities has been written", name, count);
+            }
+            Files.move(temporary, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path segmentPath : segments()) {
+                if (segmentNumber(segmentPath) < replayFrom) {
+                    Files.delete(segmentPath);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Cannot write snapshot of {} storage", name, e);
+        }
+    }
+
+    void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+        }
+        synchronized (this) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    private long append(byte operation, long id, byte[] payload) {
+        int bodyLength = Byte.BYTES + Long.BYTES + payload.length;
+        int recordSize = RECORD_OVERHEAD + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Entity of " + payload.length + " bytes does not fit in log segment");
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodyLength)
+                .put(operation)
+                .putLong(id)
+                .put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        synchronized (this) {
+            if (segment.position() + recordSize > segmentSize) {
+                roll();
+            }
+            segment.putInt(bodyLength)
+                    .put(body.array())
+                    .putInt((int) crc.getValue());
+            appended += recordSize;
+            return appended;
+        }
+    }
+
+    // called while holding this
+    private void roll() {
+        segment.force();
+        durable.accumulateAndGet(appended, Math::max);
+        newSegment();
+    }
+
+    // called while holding this
+    private void newSegment() {
+        segmentNumber++;
+        Path segmentPath = directory.resolve(String.format("%s-%020d%s", name, segmentNumber, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create log segment " + segmentPath, e);
+        }
+    }
+
+    private long readSnapshot(Consumer<T> restore) throws IOException {
+        Path snapshotPath = snapshotPath();
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("File " + snapshotPath + " is not a snapshot");
+            }
+            long replayFrom = in.readLong();
+            int length;
+            while ((length = in.readInt()) >= 0) {
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                restore.accept(codec.decode(bytes));
+            }
+            return replayFrom;
+        }
+    }
+
+    private void replay(Path segmentPath, Consumer<T> restore, LongConsumer restoreDelete) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int bodyLength = buffer.getInt();
+            if (bodyLength <= 0 || bodyLength + Integer.BYTES > buffer.remaining()) {
+                break;
+            }
+            byte[] body = new byte[bodyLength];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                log.warn("Log segment {} has torn record, the rest of it is skipped", segmentPath);
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte operation = record.get();
+            long id = record.getLong();
+            if (operation == SAVE) {
+                byte[] payload = new byte[record.remaining()];
+                record.get(payload);
+                restore.accept(codec.decode(payload));
+            } else if (operation == DELETE) {
+                restoreDelete.accept(id);
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(name + "-") && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long segmentNumber(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+        return Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve(name + ".snapshot");
+    }
+}
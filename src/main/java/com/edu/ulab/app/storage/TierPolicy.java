@@ -0,0 +1,73 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TierPolicy decides which ids are kept in hot tier and which ones are evicted from it.
+ * It keeps resident ids in insertion or access order and, for SECOND_HIT admission,
+ * a bounded set of ids seen once.
+ * Policy and storage are updated one after another, so they may briefly disagree,
+ * it costs an extra database read or a few extra entities in storage, never a stale read.
+ */
+public class TierPolicy {
+    private final int maxEntries;
+    private final StorageProperties.Tier.Admission admission;
+    // guarded by this
+    private final LinkedHashMap<Long, Boolean> resident;
+    // guarded by this
+    private final LinkedHashMap<Long, Boolean> seenOnce;
+
+    public TierPolicy(StorageProperties.Tier tier) {
+        this.maxEntries = tier.getMaxEntries();
+        this.admission = tier.getAdmission();
+        this.resident = new LinkedHashMap<>(16, 0.75f, tier.getEviction() == StorageProperties.Tier.Eviction.LRU);
+        this.seenOnce = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Record hit of resident id.
+     */
+    public synchronized void touch(long id) {
+        resident.get(id);
+    }
+
+    /**
+     * Decide if id should be put into hot tier.
+     * @param id id of accessed entity.
+     * @param force admit regardless of admission policy.
+     * @return ids which have to be evicted to make room, or null if id is not admitted.
+     */
+    public synchronized List<Long> admit(long id, boolean force) {
+        if (resident.containsKey(id)) {
+            resident.get(id);
+            return List.of();
+        }
+        if (!force && admission == StorageProperties.Tier.Admission.SECOND_HIT && seenOnce.put(id, Boolean.TRUE) == null) {
+            return null;
+        }
+        seenOnce.remove(id);
+        resident.put(id, Boolean.TRUE);
+        List<Long> evicted = new ArrayList<>();
+        Iterator<Long> eldest = resident.keySet().iterator();
+        while (resident.size() > maxEntries && eldest.hasNext()) {
+            evicted.add(eldest.next());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    public synchronized void remove(long id) {
+        resident.remove(id);
+    }
+}
@@ -1,8 +1,16 @@
 package com.edu.ulab.app.storage;
 
+import com.edu.ulab.app.config.IdAllocatorConfig;
+import com.edu.ulab.app.config.StorageProperties;
 import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.repository.IdAllocator;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
 /**
  * UserStorage class is a component, which extends abstract Storage class.
  * This class let us work with User persist operations
@@ -10,12 +18,44 @@ import org.springframework.stereotype.Component;
 @Component
 public class UserStorage extends Storage<Person, Long> {
 
-
+    public UserStorage(StorageProperties storageProperties,
+                       @Qualifier(IdAllocatorConfig.PERSON_ID_ALLOCATOR) IdAllocator idAllocator) {
+        super(StorageBackend.create(storageProperties, new PersonCodec()),
+                StorageJournal.create(storageProperties, "person", new PersonCodec()),
+                idAllocator);
+    }
     @Override
     public Person findById(Long id) {
         return super.findById(id);
     }
 
+    /**
+     * @param id entity's id.
+     * @return entity or null, if storage doesn't have it.
+     */
+    public Person findIfPresent(Long id) {
+        return lookup(id);
+    }
+
+    /**
+     * Remove entity if storage has it.
+     * @param id entity's id.
+     * @return true if entity was removed.
+     */
+    public boolean evict(Long id) {
+        return deleteAllById(List.of(id)) > 0;
+    }
+
+    /**
+     * Remove entity if storage has it with given version, newer entity is kept.
+     * @param id entity's id.
+     * @param version version of entity, which may be removed.
+     * @return true if entity was removed.
+     */
+    public boolean evict(Long id, Long version) {
+        return deleteIf(id, stored -> Objects.equals(stored.getVersion(), version));
+    }
+
     @Override
     public Person save(Person object) {
         return super.save(object);
@@ -25,4 +65,9 @@ public class UserStorage extends Storage<Person, Long> {
     public void deleteById(Long id) {
         super.deleteById(id);
     }
+
+    @Override
+    public Stream<Person> scan() {
+        return super.scan();
+    }
 }
@@ -0,0 +1,34 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.BookSearchResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping(value = WebConstant.VERSION_URL + "/book",
+        produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, WebConstant.APPLICATION_SMILE_VALUE})
+public class BookController {
+    private final UserDataFacade userDataFacade;
+
+    public BookController(UserDataFacade userDataFacade) {
+        this.userDataFacade = userDataFacade;
+    }
+
+    @GetMapping(value = "/search")
+    @Operation(summary = "Search books by words or starts of words of title and author, best matches first.")
+    public BookSearchResponse searchBooks(@RequestParam String query,
+                                          @RequestParam(required = false, defaultValue = "0") int offset,
+                                          @RequestParam(required = false) Integer limit) {
+        BookSearchResponse response = userDataFacade.searchBooks(query, offset, limit);
+        log.debug("Found {} books by query '{}'", response.getBooks().size(), query);
+        return response;
+    }
+}
@@ -0,0 +1,132 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.handler.ExceptionHandlerUtils;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.BatchItemResponse;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads JSON array or NDJSON, or CBOR/Smile array or sequence of UserBookRequests with streaming parser and creates them
+ * in chunks of batch.chunk-size, each chunk in its own transaction.
+ * Results are written and flushed after every chunk, so neither requests nor results
+ * are held in memory as a whole.
+ */
+@Slf4j
+@Component
+public class UserBookBatchProcessor {
+    private final UserDataFacade userDataFacade;
+    private final WireFormats wireFormats;
+    private final int chunkSize;
+
+    public UserBookBatchProcessor(UserDataFacade userDataFacade,
+                                  WireFormats wireFormats,
+                                  @Value("${batch.chunk-size}") int chunkSize) {
+        this.userDataFacade = userDataFacade;
+        this.wireFormats = wireFormats;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create all users with books from input and write a BatchItemResponse for every item.
+     * Items which can't be read or created get errorMessage, reading stops on malformed input.
+     * @param in array or sequence of UserBookRequests.
+     * @param out stream for results.
+     * @param mediaType format of input and results, results are NDJSON for NDJSON input and array otherwise.
+     */
+    public void process(InputStream in, OutputStream out, MediaType mediaType) throws IOException {
+        ObjectMapper objectMapper = wireFormats.mapperFor(mediaType);
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(mediaType);
+        ObjectWriter writer = objectMapper.writerFor(BatchItemResponse.class);
+        try (MappingIterator<UserBookRequest> requests = objectMapper.readerFor(UserBookRequest.class).readValues(in);
+             SequenceWriter results = ndjson
+                     ? writer.withRootValueSeparator("\n").writeValues(out)
+                     : writer.writeValuesAsArray(out)) {
+            List<UserBookRequest> chunk = new ArrayList<>(chunkSize);
+            long index = 0;
+            while (true) {
+                UserBookRequest request;
+                try {
+                    if (!requests.hasNextValue()) {
+                        break;
+                    }
+                    request = requests.nextValue();
+                } catch (IOException exc) {
+                    log.error("Can't read batch item {}: {}", index + chunk.size(), exc.getMessage());
+                    writeChunk(results, index, chunk);
+                    results.write(errorResponse(index + chunk.size(), "Malformed request: " + exc.getMessage()));
+                    return;
+                }
+                chunk.add(request);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(results, index, chunk);
+                    index += chunk.size();
+                    chunk.clear();
+                }
+            }
+            writeChunk(results, index, chunk);
+            log.info("Processed {} batch items", index + chunk.size());
+        }
+    }
+
+    private void writeChunk(SequenceWriter results, long firstIndex, List<UserBookRequest> chunk) throws IOException {
+        List<UserBookRequest> valid = new ArrayList<>(chunk.size());
+        for (UserBookRequest request : chunk) {
+            if (isValid(request)) {
+                valid.add(request);
+            }
+        }
+        List<UserBookResponse> created = List.of();
+        String chunkError = null;
+        if (!valid.isEmpty()) {
+            try {
+                created = userDataFacade.createUsersWithBooks(valid);
+            } catch (RuntimeException exc) {
+                chunkError = exc.getMessage();
+                log.error("Batch chunk from item {} failed: {}", firstIndex, ExceptionHandlerUtils.buildErrorMessage(exc));
+            }
+        }
+        int createdIndex = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            long index = firstIndex + i;
+            if (!isValid(chunk.get(i))) {
+                results.write(errorResponse(index, "User and list of books can't be null"));
+            } else if (chunkError != null) {
+                results.write(errorResponse(index, chunkError));
+            } else {
+                UserBookResponse response = created.get(createdIndex++);
+                results.write(BatchItemResponse.builder()
+                        .index(index)
+                        .userId(response.getUserId())
+                        .booksIdList(response.getBooksIdList())
+                        .build());
+            }
+        }
+        results.flush();
+    }
+
+    private static boolean isValid(UserBookRequest request) {
+        return request != null && request.getUserRequest() != null && request.getBookRequests() != null;
+    }
+
+    private static BatchItemResponse errorResponse(long index, String errorMessage) {
+        return BatchItemResponse.builder()
+                .index(index)
+                .errorMessage(errorMessage)
+                .build();
+    }
+}
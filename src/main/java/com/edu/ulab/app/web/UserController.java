@@ -1,18 +1,28 @@
 package com.edu.ulab.app.web;
 
+import com.edu.ulab.app.dto.UserWithBookIdsDto;
 import com.edu.ulab.app.facade.UserDataFacade;
 import com.edu.ulab.app.web.constant.WebConstant;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.BatchItemResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import static com.edu.ulab.app.web.constant.WebConstant.REQUEST_ID_PATTERN;
 import static com.edu.ulab.app.web.constant.WebConstant.RQID;
@@ -20,12 +30,18 @@ import static com.edu.ulab.app.web.constant.WebConstant.RQID;
 @Slf4j
 @RestController
 @RequestMapping(value = WebConstant.VERSION_URL + "/user",
-        produces = MediaType.APPLICATION_JSON_VALUE)
+        produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, WebConstant.APPLICATION_SMILE_VALUE})
 public class UserController {
     private final UserDataFacade userDataFacade;
+    private final UserBookBatchProcessor userBookBatchProcessor;
+    private final WireFormats wireFormats;
 
-    public UserController(UserDataFacade userDataFacade) {
+    public UserController(UserDataFacade userDataFacade,
+                          UserBookBatchProcessor userBookBatchProcessor,
+                          WireFormats wireFormats) {
         this.userDataFacade = userDataFacade;
+        this.userBookBatchProcessor = userBookBatchProcessor;
+        this.wireFormats = wireFormats;
     }
 
     @PostMapping(value = "/create")
@@ -37,27 +53,91 @@ public class UserController {
     public UserBookResponse createUserWithBooks(@RequestBody UserBookRequest request,
                                                 @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
         UserBookResponse response = userDataFacade.createUserWithBooks(request);
-        log.info("Response with created user and his books: {}", response);
+        log.debug("Response with created user and his books: {}", response);
         return response;
     }
 
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_CBOR_VALUE, WebConstant.APPLICATION_SMILE_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_CBOR_VALUE, WebConstant.APPLICATION_SMILE_VALUE})
+    @Operation(summary = "Create many user book rows from JSON array or NDJSON stream, or CBOR/Smile array or sequence.",
+            responses = {
+                    @ApiResponse(description = "Result of every item in the order of request",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BatchItemResponse.class)))})
+    public void createUsersWithBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+        response.setContentType(new MediaType(mediaType.getType(), mediaType.getSubtype()).toString());
+        log.debug("Got batch create request, format={}", mediaType);
+        userBookBatchProcessor.process(request.getInputStream(), response.getOutputStream(), mediaType);
+    }
+
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, WebConstant.APPLICATION_SMILE_VALUE})
+    @Operation(summary = "Export all users with ids of their books as NDJSON stream or CBOR/Smile sequence.")
+    public void exportUsersWithBooks(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                     HttpServletResponse response) throws IOException {
+        MediaType mediaType = WireFormats.negotiate(accept,
+                MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_CBOR, WireFormats.APPLICATION_SMILE);
+        response.setContentType(mediaType.toString());
+        ObjectWriter objectWriter = wireFormats.mapperFor(mediaType).writerFor(UserWithBookIdsDto.class);
+        if (!WireFormats.isBinary(mediaType)) {
+            objectWriter = objectWriter.withRootValueSeparator("\n");
+        }
+        try (SequenceWriter writer = objectWriter.writeValues(response.getOutputStream())) {
+            long count = userDataFacade.exportUsersWithBooks(user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException exc) {
+                    throw new UncheckedIOException(exc);
+                }
+            });
+            log.info("Exported {} users", count);
+        }
+    }
+
     @PutMapping(value = "/update")
     public UserBookResponse updateUserWithBooks(@RequestBody UserBookRequest request) {
         UserBookResponse response = userDataFacade.updateUserWithBooks(request);
-        log.info("Response with updated user and his books: {}", response);
+        log.debug("Response with updated user and his books: {}", response);
         return response;
     }
 
+    /**
+     * Strong ETag is user's version tag and response format. It is taken before the user is read,
+     * so If-None-Match with current tag is answered with 304 without reading or serializing the user.
+     * The same tag selects the cached response, so the body is never older than its ETag.
+     */
     @GetMapping(value = "/get/{userId}")
-    public UserBookResponse updateUserWithBooks(@PathVariable Long userId) {
-        UserBookResponse response = userDataFacade.getUserWithBooks(userId);
-        log.info("Response with user and his books: {}", response);
+    @Operation(summary = "Get user with a page of ids of his books, next page is requested with nextBooksCursor.")
+    public UserBookResponse getUserWithBooks(@PathVariable Long userId,
+                                             @RequestParam(required = false) String after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             WebRequest webRequest,
+                                             HttpServletResponse httpResponse) {
+        MediaType mediaType = WireFormats.negotiate(accept,
+                MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, WireFormats.APPLICATION_SMILE);
+        String tag = userDataFacade.getUserWithBooksTag(userId);
+        String etag = "\"" + tag + "-" + mediaType.getSubtype() + "\"";
+        httpResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (webRequest.checkNotModified(etag)) {
+            log.debug("User with id {} is not modified, etag {}", userId, etag);
+            return null;
+        }
+        UserBookResponse response = after == null && limit == null
+                ? userDataFacade.getUserWithBooks(userId, tag)
+                : userDataFacade.getUserWithBooks(userId, after, limit);
+        log.debug("Response with user and his books: {}", response);
         return response;
     }
 
     @DeleteMapping(value = "/delete/{userId}")
     public void deleteUserWithBooks(@PathVariable Long userId) {
-        log.info("Delete user and his books:  userId {}", userId);
-        userDataFacade.deleteUserWithBooks(userId);
+        log.debug("Delete user and his books:  userId {}", userId);
+        int deletedCount = userDataFacade.deleteUserWithBooks(userId);
+        log.debug("Deleted {} rows of user with id {}", deletedCount, userId);
     }
 }
@@ -0,0 +1,75 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Object mappers of wire formats for endpoints, which stream values themselves
+ * instead of using message converters.
+ * Streams of binary formats are plain sequences of values, they need no separator.
+ */
+@Component
+public class WireFormats {
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(WebConstant.APPLICATION_SMILE_VALUE);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+
+    public WireFormats(ObjectMapper objectMapper,
+                       MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                       MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter) {
+        this.jsonMapper = objectMapper;
+        this.cborMapper = cborHttpMessageConverter.getObjectMapper();
+        this.smileMapper = smileHttpMessageConverter.getObjectMapper();
+    }
+
+    /**
+     * @param mediaType JSON, NDJSON, CBOR or Smile.
+     * @return mapper of the format, JSON one for unknown media types.
+     */
+    public ObjectMapper mapperFor(MediaType mediaType) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(mediaType)) {
+            return cborMapper;
+        }
+        if (APPLICATION_SMILE.isCompatibleWith(mediaType)) {
+            return smileMapper;
+        }
+        return jsonMapper;
+    }
+
+    /**
+     * @return true if media type is CBOR or Smile.
+     */
+    public static boolean isBinary(MediaType mediaType) {
+        return MediaType.APPLICATION_CBOR.isCompatibleWith(mediaType) || APPLICATION_SMILE.isCompatibleWith(mediaType);
+    }
+
+    /**
+     * Choose response format by Accept header.
+     * @param accept value of Accept header, may be null.
+     * @param produced formats of endpoint, the first one is default.
+     * @return the most preferred accepted format of produced ones, or the default one.
+     */
+    public static MediaType negotiate(String accept, MediaType... produced) {
+        if (accept != null && !accept.isBlank()) {
+            List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (MediaType acceptedType : accepted) {
+                for (MediaType producedType : produced) {
+                    if (acceptedType.isCompatibleWith(producedType)) {
+                        return producedType;
+                    }
+                }
+            }
+        }
+        return produced[0];
+    }
+}
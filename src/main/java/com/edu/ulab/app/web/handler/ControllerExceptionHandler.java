@@ -1,10 +1,15 @@
 package com.edu.ulab.app.web.handler;
 
+import com.edu.ulab.app.exception.BackpressureException;
+import com.edu.ulab.app.exception.InvalidCursorException;
+import com.edu.ulab.app.exception.InvalidOffsetException;
 import com.edu.ulab.app.exception.NotFoundException;
 import com.edu.ulab.app.exception.NullArgumentException;
 import com.edu.ulab.app.web.response.BaseWebResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -14,10 +19,16 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 @Slf4j
 @ControllerAdvice
 public class ControllerExceptionHandler {
+    private final MeterRegistry meterRegistry;
+
+    public ControllerExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<BaseWebResponse> handleNotFoundExceptionException(@NonNull final NotFoundException exc) {
         log.error(exc.getMessage());
+        countError(exc, HttpStatus.BAD_REQUEST);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(new BaseWebResponse(createErrorMessage(exc)));
     }
@@ -25,10 +36,53 @@ public class ControllerExceptionHandler {
     @ExceptionHandler(NullArgumentException.class)
     public ResponseEntity<BaseWebResponse> handleNullArgumentException(@NonNull final NullArgumentException exc) {
         log.error(exc.getMessage());
+        countError(exc, HttpStatus.BAD_REQUEST);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<BaseWebResponse> handleInvalidCursorException(@NonNull final InvalidCursorException exc) {
+        log.error(exc.getMessage());
+        countError(exc, HttpStatus.BAD_REQUEST);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    @ExceptionHandler(InvalidOffsetException.class)
+    public ResponseEntity<BaseWebResponse> handleInvalidOffsetException(@NonNull final InvalidOffsetException exc) {
+        log.error(exc.getMessage());
+        countError(exc, HttpStatus.BAD_REQUEST);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(new BaseWebResponse(createErrorMessage(exc)));
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<BaseWebResponse> handleOptimisticLockingFailureException(
+            @NonNull final OptimisticLockingFailureException exc) {
+        log.error(exc.getMessage());
+        countError(exc, HttpStatus.CONFLICT);
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    @ExceptionHandler(BackpressureException.class)
+    public ResponseEntity<BaseWebResponse> handleBackpressureException(@NonNull final BackpressureException exc) {
+        log.error(exc.getMessage());
+        countError(exc, HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Count handled exception in app.errors, tagged by exception and response status.
+     */
+    private void countError(Exception exception, HttpStatus status) {
+        meterRegistry.counter("app.errors",
+                "exception", exception.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+    }
+
     private String createErrorMessage(Exception exception) {
         final String message = exception.getMessage();
         log.error(ExceptionHandlerUtils.buildErrorMessage(exception));
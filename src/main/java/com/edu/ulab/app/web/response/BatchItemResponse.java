@@ -0,0 +1,22 @@
+package com.edu.ulab.app.web.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+/**
+ * Result of one item of batch request, it has ids of created rows or error message.
+ */
+@Data
+@Builder
+@Jacksonized
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResponse {
+    private long index;
+    private Long userId;
+    private List<Long> booksIdList;
+    private String errorMessage;
+}
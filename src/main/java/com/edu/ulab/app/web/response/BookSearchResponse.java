@@ -0,0 +1,24 @@
+package com.edu.ulab.app.web.response;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+/**
+ * Page of found books, best matches first.
+ */
+@Data
+@Builder
+@Jacksonized
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookSearchResponse {
+    private List<BookDto> books;
+    /**
+     * Offset of the next page, null on the last page.
+     */
+    private Integer nextOffset;
+}
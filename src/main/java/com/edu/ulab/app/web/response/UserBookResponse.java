@@ -2,12 +2,18 @@ package com.edu.ulab.app.web.response;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.List;
 
 @Data
 @Builder
+@Jacksonized
 public class UserBookResponse {
     private Long userId;
     private List<Long> booksIdList;
+    /**
+     * Cursor of the next page of booksIdList, null on the last page.
+     */
+    private String nextBooksCursor;
 }
@@ -1,18 +1,32 @@
+DROP TABLE IF EXISTS BOOK;
 DROP TABLE IF EXISTS PERSON;
 CREATE TABLE IF NOT EXISTS PERSON
 (
-    ID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    ID BIGINT PRIMARY KEY,
     FULL_NAME VARCHAR (255),
     TITLE VARCHAR (255),
-    AGE INTEGER
+    AGE INTEGER,
+    VERSION BIGINT DEFAULT 0 NOT NULL
 );
 
-DROP TABLE IF EXISTS BOOK;
 CREATE TABLE IF NOT EXISTS BOOK
 (
-    ID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    ID BIGINT PRIMARY KEY,
     TITLE VARCHAR (255),
     AUTHOR VARCHAR (255),
     PAGE_COUNT BIGINT,
-    USER_ID BIGINT
+    USER_ID BIGINT,
+    VERSION BIGINT DEFAULT 0 NOT NULL
 );
+
+-- books are looked up and deleted by owner, pages of owner's books are range scans ordered by id;
+-- foreign key is added after the index, so it uses the index instead of creating one on USER_ID alone
+CREATE INDEX IF NOT EXISTS BOOK_USER_ID_IDX ON BOOK (USER_ID, ID);
+ALTER TABLE BOOK ADD CONSTRAINT IF NOT EXISTS BOOK_USER_ID_FK FOREIGN KEY (USER_ID) REFERENCES PERSON (ID);
+
+-- value of pooled sequence is the highest id of the block of 50 ids
+DROP SEQUENCE IF EXISTS PERSON_SEQ;
+CREATE SEQUENCE PERSON_SEQ START WITH 5050 INCREMENT BY 50;
+
+DROP SEQUENCE IF EXISTS BOOK_SEQ;
+CREATE SEQUENCE BOOK_SEQ START WITH 5050 INCREMENT BY 50;
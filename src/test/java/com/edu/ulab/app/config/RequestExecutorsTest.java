@@ -0,0 +1,77 @@
+package com.edu.ulab.app.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestExecutorsTest {
+    private final ExecutionProperties properties = new ExecutionProperties();
+    private ExecutorService executor;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Busy pool queues requests up to queue capacity and rejects the next one.
+     */
+    @Test
+    void platformPoolIsBoundedByThreadsAndQueue() throws InterruptedException {
+        properties.setMode(ExecutionProperties.Mode.PLATFORM);
+        properties.setPlatformThreads(2);
+        properties.setQueueCapacity(1);
+        executor = RequestExecutors.create(properties);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch released = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        executor.execute(blocking);
+        executor.execute(blocking);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(blocking);
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(blocking));
+        assertEquals(2, ((ThreadPoolExecutor) executor).getPoolSize());
+        released.countDown();
+    }
+
+    /**
+     * Virtual mode uses virtual threads on a JDK which has them and platform pool on older ones.
+     */
+    @Test
+    void virtualModeRunsRequests() throws ExecutionException, InterruptedException, TimeoutException {
+        properties.setMode(ExecutionProperties.Mode.VIRTUAL);
+        executor = RequestExecutors.create(properties);
+
+        String threadName = executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+
+        if (Runtime.version().feature() >= 21) {
+            assertFalse(executor instanceof ThreadPoolExecutor);
+        } else {
+            assertInstanceOf(ThreadPoolExecutor.class, executor);
+            assertTrue(threadName.startsWith("request-"), threadName);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.exception.InvalidCursorException;
+import com.edu.ulab.app.storage.BookStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BookCursorTest {
+
+    @Test
+    void decodeReturnsEncodedId() {
+        for (long id : new long[]{0, 1, 1234567890123L, Long.MAX_VALUE}) {
+            assertEquals(id, BookCursor.decode(BookCursor.encode(id)));
+        }
+    }
+
+    @Test
+    void missingCursorStartsFirstPage() {
+        assertEquals(0, BookCursor.decode(null));
+        assertEquals(0, BookCursor.decode(""));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        String shortCursor = Base64.getUrlEncoder().encodeToString(new byte[]{1, 2, 3, 4});
+        assertThrows(InvalidCursorException.class, () -> BookCursor.decode("not a cursor!"));
+        assertThrows(InvalidCursorException.class, () -> BookCursor.decode(shortCursor));
+    }
+
+    /**
+     * Pages continue after the last id of previous page, so deleting a book of a read page
+     * doesn't shift later pages.
+     */
+    @Test
+    void keysetPagesReturnEveryBookOnce() {
+        AtomicLong sequence = new AtomicLong();
+        BookStorage bookStorage = new BookStorage(new StorageProperties(), sequence::incrementAndGet);
+        List<Long> userBookIds = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            userBookIds.add(bookStorage.save(new Book(null, 7L, "book " + i, "author", 100L)).getId());
+            bookStorage.save(new Book(null, 8L, "other book " + i, "author", 100L));
+        }
+
+        List<Long> pagedIds = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            List<Long> page = bookStorage.findIdsByUserId(7L, BookCursor.decode(cursor), 10);
+            pagedIds.addAll(page);
+            pageSizes.add(page.size());
+            cursor = page.size() < 10 ? null : BookCursor.encode(page.get(page.size() - 1));
+            if (pageSizes.size() == 1) {
+                bookStorage.deleteById(page.get(0));
+            }
+        } while (cursor != null);
+
+        assertEquals(userBookIds, pagedIds);
+        assertEquals(List.of(10, 10, 5), pageSizes);
+    }
+}
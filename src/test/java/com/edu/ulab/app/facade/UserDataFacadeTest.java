@@ -0,0 +1,276 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.CacheConfig;
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.repository.BookSearchRepository;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import com.edu.ulab.app.repository.UserExportRepository;
+import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
+import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.annotation.AnnotationCacheOperationSource;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.CacheInterceptor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Facade over template services and embedded database, calls run in transactions as they do behind the proxy.
+ * Statements sent to database are recorded, so round trips of a call are counted.
+ */
+class UserDataFacadeTest {
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.H2)
+            .addScript("schema.sql")
+            .build();
+    private final RecordingTemplate jdbcTemplate = new RecordingTemplate(database);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+    private final UserDataFacade facade;
+
+    UserDataFacadeTest() {
+        FacadeProperties facadeProperties = new FacadeProperties();
+        facadeProperties.setUserBackend(FacadeProperties.Backend.TEMPLATE);
+        facadeProperties.setBookBackend(FacadeProperties.Backend.TEMPLATE);
+        UserMapper userMapper = Mappers.getMapper(UserMapper.class);
+        BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+        facade = new UserDataFacade(
+                Map.of("userServiceImplTemplate", new UserServiceImplTemplate(jdbcTemplate,
+                        new SequenceIdAllocator(jdbcTemplate, "PERSON_SEQ"))),
+                Map.of("bookServiceImplTemplate", new BookServiceImplTemplate(jdbcTemplate,
+                        new SequenceIdAllocator(jdbcTemplate, "BOOK_SEQ"), bookMapper,
+                        new BookSearchRepository(database, 100))),
+                facadeProperties, userMapper, bookMapper, mock(UserExportRepository.class),
+                new UserVersions(facadeProperties));
+    }
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    void booksOfCreatedUserAreInsertedWithOneBatch() {
+        UserBookResponse response = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Ann", books(null, "Dune", "Emma", "Ulysses"))));
+
+        assertEquals(List.of("INSERT INTO BOOK"), jdbcTemplate.statements("INSERT INTO BOOK"));
+        assertEquals(List.of("Dune", "Emma", "Ulysses"), response.getBooksIdList().stream()
+                .map(id -> jdbcTemplate.queryForObject("SELECT TITLE FROM BOOK WHERE ID=?", String.class, id))
+                .toList());
+        assertEquals(3, count("SELECT COUNT(*) FROM BOOK WHERE USER_ID=?", response.getUserId()));
+    }
+
+    @Test
+    void booksOfDeletedUserAreDeletedWithOneStatement() {
+        UserBookResponse deleted = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Ann", books(null, "Dune", "Emma"))));
+        UserBookResponse kept = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Bob", books(null, "Ulysses"))));
+
+        assertEquals(3, inTransaction(() -> facade.deleteUserWithBooks(deleted.getUserId())));
+
+        assertEquals(List.of("DELETE FROM BOOK"), jdbcTemplate.statements("DELETE FROM BOOK"));
+        assertEquals(0, count("SELECT COUNT(*) FROM PERSON WHERE ID=?", deleted.getUserId()));
+        assertEquals(List.of(kept.getUserId()), jdbcTemplate.queryForList("SELECT USER_ID FROM BOOK", Long.class));
+    }
+
+    /**
+     * Facade is called through caching proxy, changed user gets a new tag and so misses the cache.
+     */
+    @Test
+    void cachedUserIsKeyedByVersion() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(CacheConfig.USER_WITH_BOOKS);
+        cacheManager.setCacheSpecification("maximumSize=100,recordStats");
+        CacheInterceptor cacheInterceptor = new CacheInterceptor();
+        cacheInterceptor.setCacheOperationSource(new AnnotationCacheOperationSource());
+        cacheInterceptor.setCacheManager(cacheManager);
+        cacheInterceptor.afterPropertiesSet();
+        cacheInterceptor.afterSingletonsInstantiated();
+        ProxyFactory proxyFactory = new ProxyFactory(facade);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(cacheInterceptor);
+        UserDataFacade cachingFacade = (UserDataFacade) proxyFactory.getProxy();
+        Long userId = inTransaction(() ->
+                cachingFacade.createUserWithBooks(request(null, "Ann", books(null, "Dune")))).getUserId();
+
+        String tag = cachingFacade.getUserWithBooksTag(userId);
+        UserBookResponse first = cachingFacade.getUserWithBooks(userId, tag);
+        assertSame(first, cachingFacade.getUserWithBooks(userId, tag));
+        Long addedBookId = inTransaction(() ->
+                cachingFacade.createUserWithBooks(request(null, "Bob", books(null, "Emma")))).getBooksIdList().get(0);
+        inTransaction(() -> cachingFacade.updateUserWithBooks(request(userId, "Ann", books(List.of(addedBookId), "Emma"))));
+        String changedTag = cachingFacade.getUserWithBooksTag(userId);
+
+        assertNotEquals(tag, changedTag);
+        assertEquals(first.getBooksIdList(), cachingFacade.getUserWithBooks(userId, changedTag).getBooksIdList());
+        CacheStats stats = ((CaffeineCache) cacheManager.getCache(CacheConfig.USER_WITH_BOOKS)).getNativeCache().stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+    }
+
+    /**
+     * Pages of ids are read by cursor from (USER_ID, ID) index.
+     */
+    @Test
+    void bookIdsOfUserArePagedByIndex() {
+        UserBookResponse created = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Ann", books(null, "Dune", "Emma", "Ulysses"))));
+        inTransaction(() -> facade.createUserWithBooks(request(null, "Bob", books(null, "Walden"))));
+
+        UserBookResponse first = facade.getUserWithBooks(created.getUserId(), null, 2);
+        UserBookResponse last = facade.getUserWithBooks(created.getUserId(), first.getNextBooksCursor(), 2);
+
+        assertEquals(created.getBooksIdList().subList(0, 2), first.getBooksIdList());
+        assertEquals(created.getBooksIdList().subList(2, 3), last.getBooksIdList());
+        assertNull(last.getNextBooksCursor());
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT ID FROM BOOK WHERE USER_ID=? AND ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY", String.class, 1, 0, 2);
+        assertTrue(plan.contains("BOOK_USER_ID_IDX"), plan);
+    }
+
+    @Test
+    void booksOfUpdatedUserAreUpdatedWithOneBatch() {
+        UserBookResponse created = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Ann", books(null, "Dune", "Emma", "Ulysses"))));
+
+        UserBookResponse updated = inTransaction(() -> facade.updateUserWithBooks(request(created.getUserId(), "Ann Lee",
+                books(created.getBooksIdList(), "Dune Messiah", "Persuasion", "Dubliners"))));
+
+        assertEquals(created.getBooksIdList(), updated.getBooksIdList());
+        assertEquals(List.of("UPDATE BOOK"), jdbcTemplate.statements("UPDATE BOOK"));
+        assertEquals(List.of("Dubliners", "Dune Messiah", "Persuasion"), jdbcTemplate.queryForList(
+                "SELECT TITLE FROM BOOK WHERE USER_ID=? ORDER BY TITLE", String.class, created.getUserId()));
+    }
+
+    /**
+     * Missing book is found before any book is updated, and the user updated before is rolled back with it.
+     */
+    @Test
+    void missingBookRollsBackWholeUpdate() {
+        UserBookResponse created = inTransaction(() ->
+                facade.createUserWithBooks(request(null, "Ann", books(null, "Dune", "Emma"))));
+        List<Long> bookIds = List.of(created.getBooksIdList().get(0), -1L);
+
+        assertThrows(NotFoundException.class, () -> inTransaction(() -> facade.updateUserWithBooks(
+                request(created.getUserId(), "Ann Lee", books(bookIds, "Dune Messiah", "Persuasion")))));
+
+        assertEquals(List.of(), jdbcTemplate.statements("UPDATE BOOK"));
+        assertEquals("Ann", jdbcTemplate.queryForObject("SELECT FULL_NAME FROM PERSON WHERE ID=?", String.class,
+                created.getUserId()));
+        assertEquals(List.of("Dune", "Emma"), jdbcTemplate.queryForList(
+                "SELECT TITLE FROM BOOK WHERE USER_ID=? ORDER BY TITLE", String.class, created.getUserId()));
+    }
+
+    private <T> T inTransaction(Supplier<T> call) {
+        return transactionTemplate.execute(status -> call.get());
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+    private static UserBookRequest request(Long userId, String fullName, List<BookRequest> bookRequests) {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setId(userId);
+        userRequest.setFullName(fullName);
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+
+    /**
+     * @param ids ids of books, null to create new ones.
+     */
+    private static List<BookRequest> books(List<Long> ids, String... titles) {
+        List<BookRequest> bookRequests = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setId(ids == null ? null : ids.get(i));
+            bookRequest.setTitle(titles[i]);
+            bookRequest.setAuthor("Author");
+            bookRequest.setPageCount(100);
+            bookRequests.add(bookRequest);
+        }
+        return bookRequests;
+    }
+
+    /**
+     * Records updates and batches sent to database.
+     */
+    private static class RecordingTemplate extends JdbcTemplate {
+        private final List<String> statements = new ArrayList<>();
+
+        RecordingTemplate(EmbeddedDatabase database) {
+            super(database);
+        }
+
+        /**
+         * @return recorded statements which start with prefix, reduced to the prefix.
+         */
+        List<String> statements(String prefix) {
+            return statements.stream()
+                    .filter(sql -> sql.startsWith(prefix))
+                    .map(sql -> prefix)
+                    .toList();
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql);
+            return super.update(sql, args);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+            statements.add(sql);
+            return super.batchUpdate(sql, pss);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            statements.add(sql);
+            return super.batchUpdate(sql, batchArgs);
+        }
+
+        @Override
+        public int[] batchUpdate(String... sql) {
+            statements.addAll(Arrays.asList(sql));
+            return super.batchUpdate(sql);
+        }
+    }
+}
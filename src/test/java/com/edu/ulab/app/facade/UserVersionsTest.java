@@ -0,0 +1,123 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.repository.UserExportRepository;
+import com.edu.ulab.app.service.impl.BookServiceLocalStorageImpl;
+import com.edu.ulab.app.service.impl.UserServiceLocalStorageImpl;
+import com.edu.ulab.app.storage.BookStorage;
+import com.edu.ulab.app.storage.UserStorage;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class UserVersionsTest {
+    private final FacadeProperties facadeProperties = new FacadeProperties();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Test
+    void droppedUserNeverGetsTagAgain() {
+        UserVersions userVersions = new UserVersions(facadeProperties);
+        assertNull(userVersions.tagOf(1L));
+
+        Set<String> tags = new HashSet<>();
+        tags.add(userVersions.track(1L));
+        assertEquals(userVersions.tagOf(1L), userVersions.track(1L));
+        userVersions.bumpAfterCompletion(1L);
+        tags.add(userVersions.tagOf(1L));
+        userVersions.dropAfterCompletion(1L);
+        assertNull(userVersions.tagOf(1L));
+        tags.add(userVersions.track(1L));
+
+        assertEquals(3, tags.size());
+    }
+
+    @Test
+    void trackedUsersAreBounded() {
+        facadeProperties.setMaxTrackedUsers(10);
+        UserVersions userVersions = new UserVersions(facadeProperties);
+
+        LongStream.rangeClosed(1, 100).forEach(userVersions::track);
+
+        long tracked = LongStream.rangeClosed(1, 100).filter(userId -> userVersions.tagOf(userId) != null).count();
+        assertTrue(tracked <= 10, "tracked " + tracked);
+        assertNotNull(userVersions.tagOf(100L));
+    }
+
+    @Test
+    void unknownUserHasNoTag() {
+        UserDataFacade facade = facade(new UserVersions(facadeProperties));
+
+        assertThrows(NotFoundException.class, () -> facade.getUserWithBooksTag(1L));
+    }
+
+    /**
+     * Updated book keeps its owner, so the owner's version changes too.
+     */
+    @Test
+    void updateChangesVersionsOfUserAndOwnersOfBooks() {
+        UserVersions userVersions = new UserVersions(facadeProperties);
+        UserDataFacade facade = facade(userVersions);
+        Long firstId = facade.createUserWithBooks(request(null, "Ann", null)).getUserId();
+        UserBookResponse second = facade.createUserWithBooks(request(null, "Bob", null));
+        String firstTag = facade.getUserWithBooksTag(firstId);
+        String secondTag = facade.getUserWithBooksTag(second.getUserId());
+
+        facade.updateUserWithBooks(request(firstId, "Ann Lee", second.getBooksIdList().get(0)));
+
+        assertNotEquals(firstTag, facade.getUserWithBooksTag(firstId));
+        assertNotEquals(secondTag, facade.getUserWithBooksTag(second.getUserId()));
+    }
+
+    private UserDataFacade facade(UserVersions userVersions) {
+        facadeProperties.setUserBackend(FacadeProperties.Backend.LOCAL);
+        facadeProperties.setBookBackend(FacadeProperties.Backend.LOCAL);
+        StorageProperties storageProperties = new StorageProperties();
+        UserMapper userMapper = Mappers.getMapper(UserMapper.class);
+        BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+        return new UserDataFacade(
+                Map.of("userServiceLocalStorageImpl", new UserServiceLocalStorageImpl(
+                        new UserStorage(storageProperties, sequence::incrementAndGet), userMapper)),
+                Map.of("bookServiceLocalStorageImpl", new BookServiceLocalStorageImpl(
+                        new BookStorage(storageProperties, sequence::incrementAndGet), bookMapper)),
+                facadeProperties, userMapper, bookMapper, mock(UserExportRepository.class), userVersions);
+    }
+
+    private static UserBookRequest request(Long userId, String fullName, Long bookId) {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setId(userId);
+        userRequest.setFullName(fullName);
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+        BookRequest bookRequest = new BookRequest();
+        bookRequest.setId(bookId);
+        bookRequest.setTitle("Dune");
+        bookRequest.setAuthor("Frank Herbert");
+        bookRequest.setPageCount(412);
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(List.of(bookRequest));
+        return userBookRequest;
+    }
+}
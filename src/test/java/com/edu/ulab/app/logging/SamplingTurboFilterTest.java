@@ -0,0 +1,58 @@
+package com.edu.ulab.app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SamplingTurboFilterTest {
+    private final LoggerContext context = new LoggerContext();
+    private final SamplingTurboFilter filter = new SamplingTurboFilter();
+
+    @Test
+    void debugEventsOfSampledLoggerAreDropped() {
+        filter.addSample("com.example.service=0");
+        Logger logger = context.getLogger("com.example.service.BookService");
+
+        assertEquals(FilterReply.DENY, decide(logger, Level.DEBUG, "Found book {}"));
+        assertEquals(FilterReply.DENY, decide(logger, Level.TRACE, "Found book {}"));
+    }
+
+    @Test
+    void infoAndHigherEventsAreNeverDropped() {
+        filter.addSample("com.example=0");
+        Logger logger = context.getLogger("com.example.Facade");
+
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.INFO, "Facade uses {} users and {} books"));
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.WARN, "Retry {}"));
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.ERROR, "Failed {}"));
+    }
+
+    /**
+     * isDebugEnabled() asks the filter without format, the event itself is sampled once afterwards.
+     */
+    @Test
+    void levelChecksAreNotSampled() {
+        filter.addSample("com.example=0");
+        Logger logger = context.getLogger("com.example.Storage");
+
+        assertEquals(FilterReply.NEUTRAL, decide(logger, Level.DEBUG, null));
+    }
+
+    @Test
+    void mostSpecificLoggerWins() {
+        filter.addSample("com.example=0");
+        filter.addSample("com.example.web=1");
+
+        assertEquals(FilterReply.NEUTRAL, decide(context.getLogger("com.example.web.Filter"), Level.DEBUG, "Request {}"));
+        assertEquals(FilterReply.DENY, decide(context.getLogger("com.example.Other"), Level.DEBUG, "Request {}"));
+        assertEquals(FilterReply.NEUTRAL, decide(context.getLogger("org.example.Other"), Level.DEBUG, "Request {}"));
+    }
+
+    private FilterReply decide(Logger logger, Level level, String format) {
+        return filter.decide(null, logger, level, format, null, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.edu.ulab.app.metrics;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.facade.UserVersions;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.repository.BookRepository;
+import com.edu.ulab.app.repository.BookSearchRepository;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import com.edu.ulab.app.service.impl.BookServiceTieredImpl;
+import com.edu.ulab.app.storage.BookStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LayerMetricsAspectTest {
+    private final StorageProperties storageProperties = new StorageProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LayerMetricsAspect aspect = new LayerMetricsAspect(meterRegistry, storageProperties);
+
+    /**
+     * Tiered service reads through to its database delegate, the delegate call is not a second service sample.
+     */
+    @Test
+    void delegateCallsAreTimedSeparately() {
+        BookRepository bookRepository = mock(BookRepository.class);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(new Book(1L, 10L, "Dune", "Herbert", 412L)));
+        BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+        BookServiceImpl database = proxy(new BookServiceImpl(bookRepository, bookMapper, mock(BookSearchRepository.class)));
+        AtomicLong sequence = new AtomicLong();
+        BookServiceTieredImpl tiered = proxy(new BookServiceTieredImpl(Map.of("bookServiceImpl", database),
+                new BookStorage(storageProperties, sequence::incrementAndGet), bookMapper, storageProperties,
+                new FacadeProperties()));
+
+        tiered.getBookById(1L);
+
+        assertEquals(1, timer("app.service", "BookServiceTieredImpl", "tiered").count());
+        assertEquals(1, timer("app.service.delegate", "BookServiceImpl", "jpa").count());
+        assertNull(meterRegistry.find("app.service").tag("class", "BookServiceImpl").timer());
+    }
+
+    @Test
+    void onlyUserDataFacadeIsTimedAsFacade() {
+        UserVersions userVersions = proxy(new UserVersions(new FacadeProperties()));
+
+        userVersions.tagOf(1L);
+
+        assertNull(meterRegistry.find("app.facade").timer());
+    }
+
+    private Timer timer(String name, String className, String backend) {
+        return meterRegistry.get(name)
+                .tag("class", className)
+                .tag("operation", "getBookById")
+                .tag("backend", backend)
+                .tag("exception", "none")
+                .timer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+}
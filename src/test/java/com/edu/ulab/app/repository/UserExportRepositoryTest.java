@@ -0,0 +1,71 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.dto.UserWithBookIdsDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Export reads embedded database with fetch size smaller than count of rows.
+ */
+class UserExportRepositoryTest {
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.H2)
+            .addScript("schema.sql")
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    /**
+     * Rows of a user are grouped into one item, users without books are exported with empty list.
+     */
+    @Test
+    void usersAreExportedOnceWithTheirBooksInOrder() {
+        insertUser(3L, "Cid");
+        insertUser(1L, "Ann");
+        insertUser(2L, "Bob");
+        insertBook(12L, 3L);
+        insertBook(11L, 1L);
+        insertBook(13L, 3L);
+        insertBook(10L, 3L);
+        List<UserWithBookIdsDto> exported = new ArrayList<>();
+
+        long count = new UserExportRepository(database, 2).forEachUserWithBookIds(exported::add);
+
+        assertEquals(3, count);
+        assertEquals(List.of(1L, 2L, 3L), exported.stream().map(UserWithBookIdsDto::getId).toList());
+        assertEquals(List.of("Ann", "Bob", "Cid"), exported.stream().map(UserWithBookIdsDto::getFullName).toList());
+        assertEquals(List.of(List.of(11L), List.of(), List.of(10L, 12L, 13L)),
+                exported.stream().map(UserWithBookIdsDto::getBooksIdList).toList());
+    }
+
+    @Test
+    void emptyTableExportsNothing() {
+        List<UserWithBookIdsDto> exported = new ArrayList<>();
+
+        assertEquals(0, new UserExportRepository(database, 2).forEachUserWithBookIds(exported::add));
+        assertEquals(List.of(), exported);
+    }
+
+    private void insertUser(long id, String fullName) {
+        jdbcTemplate.update("INSERT INTO PERSON (ID, FULL_NAME, TITLE, AGE) VALUES (?, ?, 'reader', 30)", id, fullName);
+    }
+
+    private void insertBook(long id, long userId) {
+        jdbcTemplate.update("INSERT INTO BOOK (ID, USER_ID, TITLE, AUTHOR, PAGE_COUNT) VALUES (?, ?, 'Dune', 'Author', 1)",
+                id, userId);
+    }
+}
@@ -0,0 +1,200 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.exception.BackpressureException;
+import com.edu.ulab.app.storage.BookStorage;
+import com.edu.ulab.app.storage.UserStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flusher writes to embedded database. Its first transaction waits until the test releases it,
+ * so mutations queued meanwhile are flushed together in the next batch.
+ */
+class WriteBehindFlusherTest {
+    private static final long OWNER_ID = 1L;
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.H2)
+            .addScript("schema.sql")
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+    private final CountDownLatch flushStarted = new CountDownLatch(1);
+    private final CountDownLatch flushReleased = new CountDownLatch(1);
+    private final StorageProperties storageProperties = new StorageProperties();
+    private final AtomicLong sequence = new AtomicLong(100);
+    private final UserStorage userStorage = new UserStorage(storageProperties, sequence::incrementAndGet);
+    private final BookStorage bookStorage = new BookStorage(storageProperties, sequence::incrementAndGet);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WriteBehindFlusher flusher;
+
+    WriteBehindFlusherTest() {
+        StorageProperties.WriteBehind writeBehind = storageProperties.getWriteBehind();
+        writeBehind.setQueueCapacity(3);
+        writeBehind.setEnqueueTimeout(Duration.ofMillis(10));
+        writeBehind.setFlushInterval(Duration.ofMillis(10));
+        writeBehind.setMaxRetries(1);
+        writeBehind.setRetryBackoff(Duration.ZERO);
+        jdbcTemplate.update("INSERT INTO PERSON (ID, FULL_NAME, TITLE, AGE) VALUES (?, 'Ann', 'reader', 30)", OWNER_ID);
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        flushReleased.countDown();
+        flusher.stop();
+        database.shutdown();
+    }
+
+    @Test
+    void fullQueueRejectsWriteWithoutChangingStorage() throws InterruptedException {
+        startBlocked();
+        for (int i = 0; i < 3; i++) {
+            saveBook(null, "Book " + i);
+        }
+
+        assertThrows(BackpressureException.class, () -> saveBook(null, "Rejected"));
+
+        assertEquals(List.of("Book 0", "Book 1", "Book 2", "First"), bufferedTitles());
+        assertEquals(List.of("Book 0", "Book 1", "Book 2", "First"), flushedTitles());
+    }
+
+    @Test
+    void lastWriteOfRowIsFlushed() throws InterruptedException {
+        startBlocked();
+        Book book = saveBook(null, "Dune");
+        saveBook(book.getId(), "Dune Messiah", book.getVersion());
+
+        assertEquals(List.of("Dune Messiah", "First"), flushedTitles());
+        assertEquals(1, meterRegistry.counter("write_behind.coalesced").count());
+    }
+
+    /**
+     * Books are deleted after saves in a batch, so the book saved after delete of its owner's books
+     * waits for the next batch.
+     */
+    @Test
+    void bookSavedAfterDeleteOfOwnersBooksIsCarriedOver() throws InterruptedException {
+        insertBook(7L, "Old");
+        startBlocked();
+        flusher.deleteBooksByUserId(OWNER_ID, () -> bookStorage.deleteAllByUserId(OWNER_ID));
+        saveBook(null, "New");
+
+        assertEquals(List.of("New"), flushedTitles());
+    }
+
+    @Test
+    void upsertOfExistingBookKeepsOwner() throws InterruptedException {
+        insertBook(7L, "Old");
+        startBlocked();
+        flusher.saveBook(() -> bookStorage.save(new Book(7L, 2L, "Renamed", "Author", 1L)));
+
+        assertEquals(List.of("First", "Renamed"), flushedTitles());
+        assertEquals(OWNER_ID, jdbcTemplate.queryForObject("SELECT USER_ID FROM BOOK WHERE ID=7", Long.class));
+    }
+
+    @Test
+    void deadLetteredSaveIsEvictedAndPendingDeleteIsCleared()throws InterruptedException {
+        insertBook(7L, "Old");
+        startBlocked();
+        flusher.deleteBook(7L, () -> bookStorage.evict(7L));
+        Book orphan = flusher.saveBook(() -> bookStorage.save(new Book(null, 999L, "Orphan", "Author", 1L)));
+        assertTrue(flusher.isBookDeletePending(7L));
+
+        assertEquals(List.of("First"), flushedTitles());
+        assertFalse(flusher.isBookDeletePending(7L));
+        assertNull(bookStorage.findIfPresent(orphan.getId()));
+        assertEquals(1, meterRegistry.counter("write_behind.dead_letters").count());
+    }
+
+    @Test
+    void stopDrainsQueue() throws InterruptedException {
+        startBlocked();
+        saveBook(null, "Dune");
+        flusher.savePerson(() -> userStorage.save(new Person(null, "Bob", "reader", 40)));
+        assertEquals(2, meterRegistry.get("write_behind.queue.depth").gauge().value());
+
+        assertEquals(List.of("Dune", "First"), flushedTitles());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PERSON", Integer.class));
+        assertTrue(bufferedTitles().isEmpty());
+        assertThrows(BackpressureException.class, () -> saveBook(null, "Late"));
+    }
+
+    /**
+     * Start flusher and queue a book, flusher takes it and waits in its transaction until released.
+     */
+    private void startBlocked() throws InterruptedException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database)) {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+                flushStarted.countDown();
+                try {
+                    flushReleased.await();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.execute(action);
+            }
+        };
+        FacadeProperties facadeProperties = new FacadeProperties();
+        facadeProperties.setBookBackend(FacadeProperties.Backend.WRITE_BEHIND);
+        flusher = new WriteBehindFlusher(jdbcTemplate, transactionTemplate, userStorage, bookStorage,
+                new BookSearchRepository(database, 100), storageProperties, facadeProperties, meterRegistry);
+        flusher.start();
+        saveBook(null, "First");
+        assertTrue(flushStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    private Book saveBook(Long id, String title) {
+        return saveBook(id, title, null);
+    }
+
+    private Book saveBook(Long id, String title, Long version) {
+        Book book = new Book(id, OWNER_ID, title, "Author", 100L);
+        book.setVersion(version);
+        return flusher.saveBook(() -> bookStorage.save(book));
+    }
+
+    private void insertBook(long id, String title) {
+        jdbcTemplate.update("INSERT INTO BOOK (ID, USER_ID, TITLE, AUTHOR, PAGE_COUNT) VALUES (?, ?, ?, 'Author', 1)",
+                id, OWNER_ID, title);
+    }
+
+    private List<String> bufferedTitles() {
+        return bookStorage.findAllByUserId(OWNER_ID).stream().map(Book::getTitle).sorted().toList();
+    }
+
+    /**
+     * Release flusher, stop it, so queue is drained, and return titles of books in database.
+     */
+    private List<String> flushedTitles() throws InterruptedException {
+        flushReleased.countDown();
+        flusher.stop();
+        return jdbcTemplate.queryForList("SELECT TITLE FROM BOOK ORDER BY TITLE", String.class);
+    }
+}
@@ -0,0 +1,107 @@
+package com.edu.ulab.app.retry;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.impl.UserServiceLocalStorageImpl;
+import com.edu.ulab.app.storage.UserStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConflictRetryAspectTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong sequence = new AtomicLong();
+    private final RacingUserStorage userStorage = new RacingUserStorage(sequence);
+    private final UserService userService = new UserServiceLocalStorageImpl(userStorage, Mappers.getMapper(UserMapper.class));
+    private final Renamer renamer = proxy(new Renamer(userService));
+
+    @Test
+    void conflictingUpdateIsRetried() {
+        Long id = userService.createUser(user(null, "Ann")).getId();
+        userStorage.racingUpdates = 2;
+
+        assertEquals("Bob", renamer.rename(id, "Bob").getFullName());
+
+        assertEquals("Bob", userService.getUserById(id).getFullName());
+        assertEquals(2, conflicts("retried"));
+        assertEquals(0, conflicts("exhausted"));
+    }
+
+    @Test
+    void conflictingUpdateFailsAfterMaxAttempts() {
+        Long id = userService.createUser(user(null, "Ann")).getId();
+        userStorage.racingUpdates = 3;
+
+        assertThrows(OptimisticLockingFailureException.class, () -> renamer.rename(id, "Bob"));
+
+        assertEquals("Racer", userService.getUserById(id).getFullName());
+        assertEquals(2, conflicts("retried"));
+        assertEquals(1, conflicts("exhausted"));
+    }
+
+    private double conflicts(String outcome) {
+        return meterRegistry.counter("app.conflicts", "operation", "rename", "outcome", outcome).count();
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ConflictRetryAspect(meterRegistry, 3, Duration.ZERO));
+        return factory.getProxy();
+    }
+
+    private static UserDto user(Long id, String fullName) {
+        UserDto userDto = new UserDto();
+        userDto.setId(id);
+        userDto.setFullName(fullName);
+        userDto.setTitle("reader");
+        userDto.setAge(30);
+        return userDto;
+    }
+
+    static class Renamer {
+        private final UserService userService;
+
+        Renamer(UserService userService) {
+            this.userService = userService;
+        }
+
+        @RetryOnConflict
+        public UserDto rename(Long id, String fullName) {
+            return userService.updateUser(user(id, fullName));
+        }
+    }
+
+    /**
+     * Another writer updates the user right after it is read, given count of times.
+     */
+    private static class RacingUserStorage extends UserStorage {
+        private int racingUpdates;
+
+        RacingUserStorage(AtomicLong sequence) {
+            super(new StorageProperties(), sequence::incrementAndGet);
+        }
+
+        @Override
+        public Person findById(Long id) {
+            Person person = super.findById(id);
+            if (racingUpdates > 0) {
+                racingUpdates--;
+                save(new Person(id, "Racer", person.getTitle(), person.getAge()));
+            }
+            return person;
+        }
+    }
+}
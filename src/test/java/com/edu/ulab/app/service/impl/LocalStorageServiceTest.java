@@ -0,0 +1,81 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.storage.BookStorage;
+import com.edu.ulab.app.storage.UserStorage;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalStorageServiceTest {
+    private final StorageProperties storageProperties = new StorageProperties();
+    private final AtomicLong bookSequence = new AtomicLong();
+    private final AtomicLong personSequence = new AtomicLong();
+    private final BookServiceLocalStorageImpl bookService = new BookServiceLocalStorageImpl(
+            new BookStorage(storageProperties, bookSequence::incrementAndGet), Mappers.getMapper(BookMapper.class));
+    private final UserServiceLocalStorageImpl userService = new UserServiceLocalStorageImpl(
+            new UserStorage(storageProperties, personSequence::incrementAndGet), Mappers.getMapper(UserMapper.class));
+
+    /**
+     * Id which wasn't allocated must not be stored, otherwise a later create would get it and overwrite the book.
+     */
+    @Test
+    void updateOfUnknownBookIsRejected() {
+        assertThrows(NotFoundException.class, () -> bookService.updateBook(book(1L, 10L, "Dune")));
+        assertThrows(NotFoundException.class, () -> bookService.updateBooks(List.of(book(2L, 10L, "Emma"))));
+
+        BookDto created = bookService.createBook(book(null, 10L, "Ulysses"));
+        assertEquals(1L, created.getId());
+        assertEquals("Ulysses", bookService.getBookById(1L).getTitle());
+        assertEquals(List.of(1L), bookService.findBookIdsByUserId(10L));
+    }
+
+    @Test
+    void updateOfUnknownUserIsRejected() {
+        assertThrows(NotFoundException.class, () -> userService.updateUser(user(1L, "Ann")));
+
+        UserDto created = userService.createUser(user(null, "Bob"));
+        assertEquals(1L, created.getId());
+        assertEquals("Bob", userService.getUserById(1L).getFullName());
+    }
+
+    @Test
+    void storedBookIsUpdated() {
+        BookDto created = bookService.createBook(book(null, 10L, "Dune"));
+
+        bookService.updateBook(book(created.getId(), 10L, "Dune Messiah"));
+
+        assertEquals("Dune Messiah", bookService.getBookById(created.getId()).getTitle());
+        assertNotEquals(created.getId(), bookService.createBook(book(null, 10L, "Emma")).getId());
+    }
+
+    private static BookDto book(Long id, Long userId, String title) {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setUserId(userId);
+        bookDto.setTitle(title);
+        bookDto.setAuthor("Author");
+        bookDto.setPageCount(100);
+        return bookDto;
+    }
+
+    private static UserDto user(Long id, String fullName) {
+        UserDto userDto = new UserDto();
+        userDto.setId(id);
+        userDto.setFullName(fullName);
+        userDto.setTitle("reader");
+        userDto.setAge(30);
+        return userDto;
+    }
+}
@@ -0,0 +1,153 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.repository.BookSearchRepository;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import com.edu.ulab.app.storage.BookSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TemplateServiceTest {
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.H2)
+            .addScript("schema.sql")
+            .build();
+    private final ConcurrentUpdateTemplate jdbcTemplate = new ConcurrentUpdateTemplate(database);
+    private final BookSearchRepository bookSearchRepository = new BookSearchRepository(database, 100);
+    private final UserServiceImplTemplate userService = new UserServiceImplTemplate(jdbcTemplate,
+            new SequenceIdAllocator(jdbcTemplate, "PERSON_SEQ"));
+    private final BookServiceImplTemplate bookService = new BookServiceImplTemplate(jdbcTemplate,
+            new SequenceIdAllocator(jdbcTemplate, "BOOK_SEQ"), Mappers.getMapper(BookMapper.class), bookSearchRepository);
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    void updateIncrementsVersionAndKeepsOwner() {
+        Long ownerId = userService.createUser(user(null, "Ann")).getId();
+        Long otherId = userService.createUser(user(null, "Bob")).getId();
+        List<BookDto> books = bookService.createBooks(List.of(book(null, ownerId, "Dune"), book(null, ownerId, "Emma")));
+
+        List<BookDto> updated = bookService.updateBooks(List.of(
+                book(books.get(0).getId(), otherId, "Dune Messiah"),
+                book(books.get(1).getId(), otherId, "Emma"),
+                book(books.get(0).getId(), otherId, "Children of Dune")));
+
+        assertEquals(List.of(ownerId, ownerId, ownerId), updated.stream().map(BookDto::getUserId).toList());
+        assertEquals(ownerId, bookService.getBookById(books.get(0).getId()).getUserId());
+        assertEquals("Children of Dune", bookService.getBookById(books.get(0).getId()).getTitle());
+        assertEquals(2L, version("BOOK", books.get(0).getId()));
+        assertEquals(1L, version("BOOK", books.get(1).getId()));
+        BookSearchIndex.Hit hit = bookSearchRepository.search("children", 0, 1).get(0);
+        assertEquals(ownerId, hit.book().getUserId());
+        assertEquals(2L, hit.book().getVersion());
+    }
+
+    @Test
+    void updateOfMissingRowsIsRejected() {
+        Long ownerId = userService.createUser(user(null, "Ann")).getId();
+        BookDto created = bookService.createBook(book(null, ownerId, "Dune"));
+
+        assertThrows(NotFoundException.class, () -> userService.updateUser(user(ownerId + 1, "Bob")));
+        assertThrows(NotFoundException.class, () -> bookService.updateBooks(List.of(
+                book(created.getId(), ownerId, "Dune Messiah"), book(created.getId() + 1, ownerId, "Emma"))));
+        assertEquals("Dune", bookService.getBookById(created.getId()).getTitle());
+    }
+
+    /**
+     * Row is changed by another transaction between read of its version and the update.
+     */
+    @Test
+    void concurrentUpdateIsAConflict() {
+        Long ownerId = userService.createUser(user(null, "Ann")).getId();
+        BookDto created = bookService.createBook(book(null, ownerId, "Dune"));
+
+        jdbcTemplate.updateAfterNextRead("UPDATE PERSON SET VERSION=VERSION+1 WHERE ID=" + ownerId);
+        assertThrows(OptimisticLockingFailureException.class, () -> userService.updateUser(user(ownerId, "Bob")));
+        jdbcTemplate.updateAfterNextRead("UPDATE BOOK SET VERSION=VERSION+1 WHERE ID=" + created.getId());
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> bookService.updateBook(book(created.getId(), ownerId, "Dune Messiah")));
+
+        assertEquals("Ann", userService.getUserById(ownerId).getFullName());
+        assertEquals("Dune", bookService.getBookById(created.getId()).getTitle());
+        userService.updateUser(user(ownerId, "Bob"));
+        assertEquals("Bob", userService.getUserById(ownerId).getFullName());
+    }
+
+    private long version(String table, Long id) {
+        return jdbcTemplate.queryForObject("SELECT VERSION FROM " + table + " WHERE ID=?", Long.class, id);
+    }
+
+    private static UserDto user(Long id, String fullName) {
+        UserDto userDto = new UserDto();
+        userDto.setId(id);
+        userDto.setFullName(fullName);
+        userDto.setTitle("reader");
+        userDto.setAge(30);
+        return userDto;
+    }
+
+    private static BookDto book(Long id, Long userId, String title) {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setUserId(userId);
+        bookDto.setTitle(title);
+        bookDto.setAuthor("Frank Herbert");
+        bookDto.setPageCount(412);
+        return bookDto;
+    }
+
+    /**
+     * Runs given statement right after the next read of versions, as a concurrent transaction would.
+     */
+    private static class ConcurrentUpdateTemplate extends JdbcTemplate {
+        private String concurrentUpdate;
+
+        ConcurrentUpdateTemplate(EmbeddedDatabase database) {
+            super(database);
+        }
+
+        void updateAfterNextRead(String sql) {
+            concurrentUpdate = sql;
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            List<T> result = super.queryForList(sql, elementType, args);
+            runConcurrentUpdate();
+            return result;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            super.query(sql, rch, args);
+            runConcurrentUpdate();
+        }
+
+        private void runConcurrentUpdate() {
+            if (concurrentUpdate != null) {
+                String sql = concurrentUpdate;
+                concurrentUpdate = null;
+                update(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.FacadeProperties;
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.storage.BookStorage;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Local storage service stands in for database, so calls which reach the system of record are counted.
+ */
+class TieredServiceTest {
+    private static final long USER_ID = 10L;
+
+    private final StorageProperties storageProperties = new StorageProperties();
+    private final BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+    private final AtomicLong databaseSequence = new AtomicLong();
+    private final AtomicLong tierSequence = new AtomicLong(1_000);
+    private final BookService database = spy(new BookServiceLocalStorageImpl(
+            new BookStorage(storageProperties, databaseSequence::incrementAndGet), bookMapper));
+
+    @Test
+    void pagesOfAdmittedUserAreServedFromStorage() {
+        BookServiceTieredImpl tiered = tiered();
+        List<Long> ids = createBooks(3);
+
+        assertEquals(ids.subList(0, 2), tiered.findBookIdsByUserId(USER_ID, 0, 2));
+        assertEquals(ids.subList(2, 3), tiered.findBookIdsByUserId(USER_ID, ids.get(1), 2));
+        assertEquals("Book 3", tiered.getBookById(ids.get(2)).getTitle());
+
+        verify(database, times(1)).findBookIdsByUserId(eq(USER_ID), anyLong(), anyInt());
+        verify(database, times(1)).findBooksByUserId(USER_ID);
+        verify(database, never()).getBookById(ids.get(2));
+    }
+
+    @Test
+    void secondHitAdmissionLoadsUserOnSecondRead() {
+        storageProperties.getTier().setAdmission(StorageProperties.Tier.Admission.SECOND_HIT);
+        BookServiceTieredImpl tiered = tiered();
+        List<Long> ids = createBooks(2);
+
+        tiered.findBookIdsByUserId(USER_ID, 0, 10);
+        verify(database, never()).findBooksByUserId(USER_ID);
+        tiered.findBookIdsByUserId(USER_ID, 0, 10);
+        verify(database, times(1)).findBooksByUserId(USER_ID);
+        assertEquals(ids, tiered.findBookIdsByUserId(USER_ID, 0, 10));
+
+        verify(database, times(2)).findBookIdsByUserId(eq(USER_ID), anyLong(), anyInt());
+    }
+
+    @Test
+    void leastRecentlyUsedBookIsEvicted() {
+        storageProperties.getTier().setMaxEntries(2);
+        BookServiceTieredImpl tiered = tiered();
+        List<Long> ids = createBooks(3);
+
+        tiered.getBookById(ids.get(0));
+        tiered.getBookById(ids.get(1));
+        tiered.getBookById(ids.get(0));
+        tiered.getBookById(ids.get(2));
+        tiered.getBookById(ids.get(0));
+        tiered.getBookById(ids.get(1));
+
+        verify(database, times(1)).getBookById(ids.get(0));
+        verify(database, times(2)).getBookById(ids.get(1));
+        verify(database, times(1)).getBookById(ids.get(2));
+    }
+
+    @Test
+    void writesGoThroughAndReplaceStoredBooks() {
+        BookServiceTieredImpl tiered = tiered();
+        List<Long> ids = createBooks(2);
+        tiered.findBookIdsByUserId(USER_ID, 0, 10);
+
+        tiered.updateBook(book(ids.get(0), "Dune"));
+        tiered.deleteBookById(ids.get(1));
+
+        assertEquals("Dune", tiered.getBookById(ids.get(0)).getTitle());
+        verify(database, never()).getBookById(ids.get(0));
+        assertEquals("Dune", database.getBookById(ids.get(0)).getTitle());
+        assertEquals(List.of(ids.get(0)), tiered.findBookIdsByUserId(USER_ID, 0, 10));
+        assertThrows(NotFoundException.class, () -> tiered.getBookById(ids.get(1)));
+    }
+
+    @Test
+    void systemOfRecordMustBeDatabase() {
+        FacadeProperties facadeProperties = new FacadeProperties();
+        facadeProperties.setTieredSystemOfRecord(FacadeProperties.Backend.LOCAL);
+
+        assertThrows(IllegalStateException.class, () -> new BookServiceTieredImpl(Map.of(),
+                new BookStorage(storageProperties, tierSequence::incrementAndGet), bookMapper, storageProperties,
+                facadeProperties));
+    }
+
+    private BookServiceTieredImpl tiered() {
+        FacadeProperties facadeProperties = new FacadeProperties();
+        facadeProperties.setTieredSystemOfRecord(FacadeProperties.Backend.TEMPLATE);
+        return new BookServiceTieredImpl(Map.of("bookServiceImplTemplate", database),
+                new BookStorage(storageProperties, tierSequence::incrementAndGet), bookMapper, storageProperties,
+                facadeProperties);
+    }
+
+    private List<Long> createBooks(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> database.createBook(book(null, "Book " + i)).getId())
+                .toList();
+    }
+
+    private static BookDto book(Long id, String title) {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setUserId(USER_ID);
+        bookDto.setTitle(title);
+        bookDto.setAuthor("Frank Herbert");
+        bookDto.setPageCount(412);
+        return bookDto;
+    }
+}
@@ -0,0 +1,125 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookSearchIndexTest {
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        index.add(new Book(1L, 10L, "Notes on Java", "Ann Smith", 100L));
+        index.add(new Book(2L, 10L, "Javascript patterns", "Bob Stone", 100L));
+        index.add(new Book(3L, 20L, "Gardening", "Java Jones", 100L));
+        index.add(new Book(4L, 20L, "Cooking", "Javanese Brown", 100L));
+        index.add(new Book(5L, 30L, "Java concurrency", "Brian Java", 100L));
+        index.add(new Book(6L, 30L, "Javier's garden", "Anna Green", 100L));
+    }
+
+    /**
+     * Exact title word beats title prefix, which beats exact author word, which beats author prefix.
+     * Equal scores are ordered by id.
+     */
+    @Test
+    void matchesAreRankedByFieldAndMatchKind() {
+        List<BookSearchIndex.Hit> hits = index.search("java", 0, 10);
+
+        assertEquals(List.of(1L, 5L, 2L, 3L, 4L), ids(hits));
+        assertEquals(List.of(3.0, 3.0, 2.0, 1.5, 1.0), hits.stream().map(BookSearchIndex.Hit::score).toList());
+    }
+
+    @Test
+    void allTermsMustMatch() {
+        assertEquals(List.of(5L), ids(index.search("Java concurrency", 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("notes, java", 0, 10)));
+        assertEquals(List.of(3L), ids(index.search("java garden", 0, 10)));
+        assertEquals(List.of(), ids(index.search("j", 0, 10)));
+    }
+
+    @Test
+    void offsetAndLimitSelectPageOfRanking() {
+        assertEquals(List.of(5L, 2L), ids(index.search("java", 1, 2)));
+        assertEquals(List.of(2L, 3L, 4L), ids(index.search("java", 2, Integer.MAX_VALUE)));
+        assertEquals(List.of(), ids(index.search("java", Integer.MAX_VALUE, 10)));
+        assertEquals(List.of(), ids(index.search("java", 0, 0)));
+    }
+
+    @Test
+    void updatedAndRemovedBooksLeaveResults() {
+        index.add(new Book(1L, 10L, "Cooking again", "Ann Smith", 100L));
+        assertEquals(List.of(5L, 2L, 3L, 4L), ids(index.search("java", 0, 10)));
+        assertEquals(List.of(1L, 4L), ids(index.search("cooking", 0, 10)));
+
+        assertEquals(2, index.removeAllByUserId(20L));
+        assertEquals(List.of(5L, 2L), ids(index.search("java", 0, 10)));
+
+        index.remove(5L);
+        assertEquals(List.of(2L), ids(index.search("java", 0, 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void olderVersionDoesNotReplaceIndexedBook() {
+        index.add(book(7L, "Dune Messiah", 2L));
+        index.add(book(7L, "Dune", 1L));
+        index.add(book(7L, "Children of Dune", 2L));
+
+        assertEquals("Dune Messiah", index.get(7L).getTitle());
+        assertEquals(List.of(), ids(index.search("children", 0, 10)));
+
+        index.add(book(7L, "Children of Dune", 3L));
+        assertEquals(List.of(7L), ids(index.search("children", 0, 10)));
+        assertEquals(List.of(), ids(index.search("messiah", 0, 10)));
+    }
+
+    /**
+     * Concurrent updates of one book must leave postings of the last indexed title only.
+     */
+    @Test
+    void concurrentUpdatesLeaveNoOrphanPostings() throws InterruptedException {
+        String[] titles = {"Alpha", "Bravo", "Charlie", "Delta"};
+        Thread[] threads = new Thread[titles.length];
+        for (int t = 0; t < threads.length; t++) {
+            String title = titles[t];
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    index.add(book(7L, title, null));
+                    if (i % 10 == 0) {
+                        index.remove(7L);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        index.add(book(7L, "Omega", null));
+
+        for (String title : titles) {
+            assertEquals(List.of(), ids(index.search(title, 0, 10)));
+        }
+        assertEquals(List.of(7L), ids(index.search("omega", 0, 10)));
+        assertEquals(7, index.size());
+        int keyCount = index.keyCount();
+        setUp();
+        index.add(book(7L, "Omega", null));
+        assertEquals(index.keyCount(), keyCount);
+    }
+
+    private static Book book(long id, String title, Long version) {
+        Book book = new Book(id, 40L, title, "Frank Herbert", 100L);
+        book.setVersion(version);
+        return book;
+    }
+
+    private static List<Long> ids(List<BookSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.book().getId()).toList();
+    }
+}
@@ -0,0 +1,59 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookStorageTest {
+    private final AtomicLong sequence = new AtomicLong();
+    private final BookStorage storage = new BookStorage(new StorageProperties(), sequence::incrementAndGet);
+
+    @Test
+    void indexFollowsSavesOwnerChangesAndDeletes() {
+        LongStream.rangeClosed(1, 6).forEach(i -> storage.save(book(null, i % 2 == 0 ? 10L : 20L)));
+
+        assertEquals(List.of(2L, 4L, 6L), storage.findIdsByUserId(10L));
+        assertEquals(List.of(1L, 3L, 5L), storage.findAllByUserId(20L).stream().map(Book::getId).toList());
+
+        storage.save(book(3L, 10L));
+        storage.deleteById(4L);
+        storage.evict(6L);
+
+        assertEquals(List.of(2L, 3L), storage.findIdsByUserId(10L));
+        assertEquals(List.of(1L, 5L), storage.findIdsByUserId(20L));
+        assertTrue(storage.findIdsByUserId(30L).isEmpty());
+    }
+
+    @Test
+    void pagesOfIdsAreAscendingAfterGivenId() {
+        LongStream.rangeClosed(1, 7).forEach(i -> storage.save(book(null, 10L)));
+
+        assertEquals(List.of(1L, 2L, 3L), storage.findIdsByUserId(10L, 0, 3));
+        assertEquals(List.of(4L, 5L, 6L), storage.findIdsByUserId(10L, 3L, 3));
+        assertEquals(List.of(7L), storage.findIdsByUserId(10L, 6L, 3));
+        assertTrue(storage.findIdsByUserId(10L, 7L, 3).isEmpty());
+    }
+
+    @Test
+    void deleteAllByUserIdRemovesOnlyUsersBooks() {
+        LongStream.rangeClosed(1, 5).forEach(i -> storage.save(book(null, i <= 3 ? 10L : 20L)));
+
+        assertEquals(3, storage.deleteAllByUserId(10L));
+        assertEquals(0, storage.deleteAllByUserId(10L));
+
+        assertTrue(storage.findIdsByUserId(10L).isEmpty());
+        assertEquals(List.of(4L, 5L), storage.findIdsByUserId(20L));
+        assertEquals(2, storage.findAll().size());
+    }
+
+    private static Book book(Long id, Long userId) {
+        return new Book(id, userId, "Dune", "Frank Herbert", 412L);
+    }
+}
@@ -0,0 +1,64 @@
+package com.edu.ulab.app.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongLongHashMapTest {
+
+    @Test
+    void putGetReplaceRemove() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertEquals(LongLongHashMap.NO_VALUE, map.put(7, 0));
+        assertEquals(0, map.get(7));
+        assertEquals(0, map.put(7, 10));
+        assertFalse(map.replace(7, 0, 20));
+        assertTrue(map.replace(7, 10, 20));
+        assertFalse(map.replace(8, LongLongHashMap.NO_VALUE, 1));
+        assertEquals(20, map.remove(7));
+        assertEquals(LongLongHashMap.NO_VALUE, map.get(7));
+        assertEquals(LongLongHashMap.NO_VALUE, map.remove(7));
+        assertEquals(0, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, -5));
+    }
+
+    /**
+     * Random puts and removes grow segments and shift probed entries back, map must agree with HashMap.
+     */
+    @Test
+    void agreesWithHashMapAfterResizesAndRemovals() {
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? LongLongHashMap.NO_VALUE : removed, map.remove(key));
+            } else {
+                long value = random.nextLong() >>> 1;
+                Long previous = expected.put(key, value);
+                assertEquals(previous == null ? LongLongHashMap.NO_VALUE : previous, map.put(key, value));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        Set<Long> keys = new HashSet<>();
+        for (PrimitiveIterator.OfLong iterator = map.keyIterator(); iterator.hasNext(); ) {
+            keys.add(iterator.nextLong());
+        }
+        assertEquals(expected.keySet(), keys);
+    }
+}
@@ -0,0 +1,104 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.entity.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OffHeapBackendTest {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int WRITERS = 4;
+    private static final int IDS_PER_WRITER = 50;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    void putGetRemove() {
+        OffHeapBackend<Person> backend = new OffHeapBackend<>(new PersonCodec(), CHUNK_SIZE);
+
+        assertNull(backend.put(1, person(1, 10)));
+        assertEquals(10, backend.get(1).getAge());
+        assertEquals(10, backend.put(1, person(1, 11)).getAge());
+        assertEquals(11, backend.get(1).getAge());
+        assertEquals(11, backend.remove(1).getAge());
+        assertNull(backend.get(1));
+        assertEquals(0, backend.size());
+    }
+
+    /**
+     * Replaced records fill many chunks, so compaction runs again and again while writers go on.
+     * Every written id must stay readable and keep its last value.
+     */
+    @Test
+    void compactionKeepsConcurrentWrites() throws Exception {
+        OffHeapBackend<Person> backend = new OffHeapBackend<>(new PersonCodec(), CHUNK_SIZE);
+        int ids = WRITERS * IDS_PER_WRITER;
+        AtomicIntegerArray written = new AtomicIntegerArray(ids);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                int firstId = writer * IDS_PER_WRITER;
+                writers.add(executor.submit(() -> {
+                    for (int round = 1; round <= ROUNDS; round++) {
+                        for (int id = firstId; id < firstId + IDS_PER_WRITER; id++) {
+                            backend.put(id, person(id, round));
+                            written.set(id, round);
+                        }
+                    }
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                while (writing.get()) {
+                    for (int id = 0; id < ids; id++) {
+                        int round = written.get(id);
+                        if (round > 0) {
+                            Person person = backend.get(id);
+                            assertNotNull(person, "id " + id + " is lost");
+                            assertEquals(id, person.getId());
+                        }
+                    }
+                }
+            });
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            for (int id = 0; id < ids; id++) {
+                Person person = backend.get(id);
+                assertNotNull(person, "id " + id + " is lost");
+                assertEquals(ROUNDS, person.getAge());
+            }
+            Thread.sleep(50);
+        }
+        Set<Long> iterated = new HashSet<>();
+        for (Iterator<Person> persons = backend.iterator(); persons.hasNext(); ) {
+            iterated.add(persons.next().getId());
+        }
+        assertEquals(ids, iterated.size());
+        assertEquals(ids, backend.size());
+    }
+
+    private static Person person(long id, int age) {
+        return new Person(id, "user " + id, "reader", age);
+    }
+}
@@ -0,0 +1,182 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.exception.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageJournalTest {
+    @TempDir
+    Path directory;
+
+    private StorageProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory);
+        properties.getJournal().setSegmentSize(DataSize.ofBytes(512));
+        properties.getJournal().setSnapshotInterval(Duration.ofHours(1));
+    }
+
+    /**
+     * Small segments make the log roll many times, storage is restored from all of them.
+     */
+    @Test
+    void storageIsRecoveredFromLog() throws IOException {
+        UserStorage storage = newStorage();
+        for (int i = 0; i < 100; i++) {
+            storage.save(new Person(null, "user " + i, "reader", i));
+        }
+        for (long id = 1; id <= 100; id += 2) {
+            storage.save(new Person(id, "renamed " + id, "writer", 200));
+        }
+        for (long id = 1; id <= 100; id += 5) {
+            storage.deleteById(id);
+        }
+        Map<Long, String> saved = names(storage.findAll().stream());
+        storage.closeJournal();
+
+        UserStorage recovered = newStorage();
+        try {
+            assertEquals(saved, names(recovered.findAll().stream()));
+            assertTrue(segments().size() > 1);
+        } finally {
+            recovered.closeJournal();
+        }
+    }
+
+    /**
+     * Entities of snapshot are taken after the log is rolled. A write logged while they are iterated
+     * isn't in the snapshot, it is replayed from the new segment, and segments before it are deleted.
+     */
+    @Test
+    void writesDuringSnapshotAreRecoveredFromNewSegment() throws IOException {
+        Map<Long, Person> state = new ConcurrentHashMap<>();
+        StorageJournal<Person> journal = open(state);
+        for (long id = 1; id <= 50; id++) {
+            save(journal, state, new Person(id, "user " + id, "reader", (int) id));
+        }
+        journal.appendDelete(3);
+        state.remove(3L);
+        Path firstSegment = segments().get(0);
+
+        journal.snapshot(() -> {
+            List<Person> entities = List.copyOf(state.values());
+            save(journal, state, new Person(1000L, "written during snapshot", "reader", 1));
+            return entities.stream();
+        });
+        save(journal, state, new Person(2000L, "written after snapshot", "reader", 2));
+        journal.close();
+
+        assertTrue(Files.exists(directory.resolve("person.snapshot")));
+        assertFalse(Files.exists(firstSegment));
+        Map<Long, Person> recovered = new ConcurrentHashMap<>();
+        StorageJournal<Person> reopened = open(recovered);
+        reopened.close();
+        assertEquals(names(state.values().stream()), names(recovered.values().stream()));
+    }
+
+    /**
+     * Record torn by a crash fails its crc, replay stops at it and keeps records written before.
+     */
+    @Test
+    void replayStopsAtTornRecord() throws IOException {
+        properties.getJournal().setSegmentSize(DataSize.ofKilobytes(64));
+        UserStorage storage = newStorage();
+        for (int i = 1; i <= 10; i++) {
+            storage.save(new Person(null, "user " + i, "reader", i));
+        }
+        storage.closeJournal();
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int lastRecord = 0;
+        for (int position = 0; buffer.getInt(position) > 0; position += buffer.getInt(position) + 2 * Integer.BYTES) {
+            lastRecord = position;
+        }
+        bytes[lastRecord + Integer.BYTES + 1] ^= 1;
+        Files.write(segment, bytes);
+
+        UserStorage recovered = newStorage();
+        try {
+            assertEquals(9, recovered.findAll().size());
+            assertThrows(NotFoundException.class, () -> recovered.findById(10L));
+        } finally {
+            recovered.closeJournal();
+        }
+    }
+
+    /**
+     * Recovered storage logs to a new segment, the next recovery replays old and new ones.
+     */
+    @Test
+    void recoveredStorageKeepsLogging() throws IOException {
+        UserStorage storage = newStorage();
+        storage.save(new Person(null, "before restart", "reader", 1));
+        storage.closeJournal();
+
+        UserStorage restarted = newStorage();
+        restarted.save(new Person(1L, "renamed after restart", "reader", 1));
+        restarted.save(new Person(2L, "created after restart", "reader", 2));
+        Map<Long, String> saved = names(restarted.findAll().stream());
+        restarted.closeJournal();
+
+        UserStorage recovered = newStorage();
+        try {
+            assertEquals(saved, names(recovered.findAll().stream()));
+            assertEquals(1L, recovered.findById(1L).getVersion());
+        } finally {
+            recovered.closeJournal();
+        }
+    }
+
+    private UserStorage newStorage() {
+        AtomicLong sequence = new AtomicLong();
+        UserStorage storage = new UserStorage(properties, sequence::incrementAndGet);
+        storage.recover();
+        return storage;
+    }
+
+    private StorageJournal<Person> open(Map<Long, Person> state) {
+        StorageJournal<Person> journal = StorageJournal.create(properties, "person", new PersonCodec());
+        journal.open(person -> state.put(person.getId(), person), state::remove, () -> state.values().stream());
+        return journal;
+    }
+
+    private static void save(StorageJournal<Person> journal, Map<Long, Person> state, Person person) {
+        journal.sync(journal.appendSave(person));
+        state.put(person.getId(), person);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static Map<Long, String> names(Stream<Person> persons) {
+        return persons.collect(Collectors.toMap(Person::getId, Person::getFullName));
+    }
+}
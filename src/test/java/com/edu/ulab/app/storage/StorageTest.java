@@ -0,0 +1,135 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StorageProperties;
+import com.edu.ulab.app.entity.Person;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StorageTest {
+    private static final int THREADS = 8;
+
+    @ParameterizedTest
+    @EnumSource(StorageProperties.Backend.class)
+    void concurrentSavesGetUniqueIds(StorageProperties.Backend backend) throws Exception {
+        UserStorage storage = newStorage(backend);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                ids.add(storage.save(newPerson(null, thread * 1000 + i)).getId());
+            }
+        });
+
+        assertEquals(THREADS * 1000, ids.size());
+        assertEquals(THREADS * 1000, storage.findAll().size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageProperties.Backend.class)
+    void concurrentUpdatesOfOneEntityAreNotLost(StorageProperties.Backend backend) throws Exception {
+        UserStorage storage = newStorage(backend);
+        Long id = storage.save(newPerson(null, 0)).getId();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 200; i++) {
+                while (true) {
+                    Person stored = storage.findById(id);
+                    Person updated = newPerson(id, stored.getAge() + 1);
+                    updated.setVersion(stored.getVersion());
+                    try {
+                        storage.save(updated);
+                        break;
+                    } catch (OptimisticLockingFailureException exc) {
+                        // stored person was updated by another thread, read it again
+                    }
+                }
+            }
+        });
+
+        Person person = storage.findById(id);
+        assertEquals(THREADS * 200, person.getAge());
+        assertEquals(THREADS * 200, person.getVersion());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageProperties.Backend.class)
+    void scanSeesEntitiesAsTheyWereWhenItStarted(StorageProperties.Backend backend) {
+        UserStorage storage = newStorage(backend);
+        for (int i = 0; i < 100; i++) {
+            storage.save(newPerson(null, i));
+        }
+        Map<Long, Integer> before = ages(storage.findAll().stream());
+
+        Map<Long, Integer> scanned;
+        try (Stream<Person> snapshot = storage.scan()) {
+            for (Long id : before.keySet()) {
+                if (id % 3 == 0) {
+                    storage.deleteById(id);
+                } else {
+                    storage.save(newPerson(id, 1000));
+                }
+            }
+            storage.save(newPerson(null, 2000));
+            scanned = ages(snapshot);
+        }
+
+        assertEquals(before, scanned);
+        assertEquals(before.size() - before.keySet().stream().filter(id -> id % 3 == 0).count() + 1,
+                storage.findAll().size());
+    }
+
+    private static UserStorage newStorage(StorageProperties.Backend backend) {
+        StorageProperties properties = new StorageProperties();
+        properties.setBackend(backend);
+        AtomicLong sequence = new AtomicLong();
+        return new UserStorage(properties, sequence::incrementAndGet);
+    }
+
+    private static Person newPerson(Long id, int age) {
+        return new Person(id, "user " + age, "reader", age);
+    }
+
+    private static Map<Long, Integer> ages(Stream<Person> persons) {
+        return persons.collect(Collectors.toMap(Person::getId, Person::getAge));
+    }
+
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int number = thread;
+                tasks.add(() -> {
+                    task.run(number);
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
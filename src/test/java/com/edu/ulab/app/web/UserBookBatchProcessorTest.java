@@ -0,0 +1,93 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.BatchItemResponse;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batch of NDJSON items in chunks of two, facade creates every user with one book.
+ */
+class UserBookBatchProcessorTest {
+    private static final String ITEM = "{\"userRequest\":{\"fullName\":\"Ann\",\"title\":\"reader\",\"age\":30},"
+            + "\"bookRequests\":[{\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"pageCount\":412}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserDataFacade userDataFacade = mock(UserDataFacade.class);
+    private final UserBookBatchProcessor processor = new UserBookBatchProcessor(userDataFacade,
+            new WireFormats(objectMapper, new MappingJackson2CborHttpMessageConverter(),
+                    new MappingJackson2SmileHttpMessageConverter()), 2);
+
+    /**
+     * Items read before malformed one are created, reading stops on it.
+     */
+    @Test
+    void malformedItemStopsBatchAfterReadItems() throws IOException {
+        when(userDataFacade.createUsersWithBooks(anyList()))
+                .thenReturn(List.of(created(1), created(2)))
+                .thenReturn(List.of(created(3)));
+
+        List<BatchItemResponse> results = process(ITEM, ITEM, ITEM, "{\"userRequest\":", ITEM);
+
+        assertEquals(4, results.size());
+        assertEquals(List.of(1L, 2L, 3L), results.subList(0, 3).stream().map(BatchItemResponse::getUserId).toList());
+        assertEquals(List.of(13L), results.get(2).getBooksIdList());
+        assertEquals(3, results.get(3).getIndex());
+        assertNull(results.get(3).getUserId());
+        assertTrue(results.get(3).getErrorMessage().startsWith("Malformed request"), results.get(3).getErrorMessage());
+        verify(userDataFacade, times(2)).createUsersWithBooks(anyList());
+    }
+
+    /**
+     * Failed chunk gives its error to all its items, the next chunk is created, invalid item is not sent to facade.
+     */
+    @Test
+    void failedChunkIsReportedForEachOfItsItems() throws IOException {
+        when(userDataFacade.createUsersWithBooks(anyList()))
+                .thenThrow(new IllegalStateException("Database is down"))
+                .thenReturn(List.of(created(3)));
+
+        List<BatchItemResponse> results = process(ITEM, ITEM, ITEM, "{\"userRequest\":null,\"bookRequests\":[]}");
+
+        assertEquals(List.of(0L, 1L, 2L, 3L), results.stream().map(BatchItemResponse::getIndex).toList());
+        assertEquals("Database is down", results.get(0).getErrorMessage());
+        assertEquals("Database is down", results.get(1).getErrorMessage());
+        assertEquals(3L, results.get(2).getUserId());
+        assertEquals("User and list of books can't be null", results.get(3).getErrorMessage());
+        verify(userDataFacade).createUsersWithBooks(List.of(objectMapper.readValue(ITEM, UserBookRequest.class)));
+    }
+
+    private List<BatchItemResponse> process(String... items) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        processor.process(new ByteArrayInputStream(String.join("\n", items).getBytes(StandardCharsets.UTF_8)), out,
+                MediaType.APPLICATION_NDJSON);
+        return objectMapper.readerFor(BatchItemResponse.class).<BatchItemResponse>readValues(out.toByteArray()).readAll();
+    }
+
+    private static UserBookResponse created(long userId) {
+        return UserBookResponse.builder()
+                .userId(userId)
+                .booksIdList(List.of(userId + 10))
+                .build();
+    }
+}
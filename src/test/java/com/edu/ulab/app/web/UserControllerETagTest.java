@@ -0,0 +1,99 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(UserController.class)
+@Import(WebTestConfig.class)
+class UserControllerETagTest {
+    private static final String GET_URL = WebConstant.VERSION_URL + "/user/get/1";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private UserDataFacade userDataFacade;
+    @MockBean
+    private UserBookBatchProcessor userBookBatchProcessor;
+
+    @BeforeEach
+    void setUp() {
+        when(userDataFacade.getUserWithBooksTag(1L)).thenReturn("e-1");
+        when(userDataFacade.getUserWithBooks(eq(1L), anyString())).thenReturn(UserBookResponse.builder()
+                .userId(1L)
+                .booksIdList(List.of(11L))
+                .build());
+    }
+
+    @Test
+    void etagIsVersionTagAndFormatOfServedBody() throws Exception {
+        mockMvc.perform(get(GET_URL).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-1-json\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andExpect(jsonPath("$.userId").value(1));
+        mockMvc.perform(get(GET_URL).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-1-cbor\""));
+
+        verify(userDataFacade, times(2)).getUserWithBooks(1L, "e-1");
+    }
+
+    @Test
+    void currentEtagIsAnsweredWithNotModifiedWithoutReadingUser() throws Exception {
+        mockMvc.perform(get(GET_URL)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"e-1-json\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-1-json\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        verify(userDataFacade, never()).getUserWithBooks(eq(1L), anyString());
+    }
+
+    @Test
+    void etagOfOtherFormatIsNotMatched() throws Exception {
+        mockMvc.perform(get(GET_URL)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"e-1-json\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-1-cbor\""));
+    }
+
+    @Test
+    void changedUserIsServedWithNewEtag() throws Exception {
+        when(userDataFacade.getUserWithBooksTag(1L)).thenReturn("e-2");
+
+        mockMvc.perform(get(GET_URL)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"e-1-json\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-2-json\""));
+
+        verify(userDataFacade).getUserWithBooks(1L, "e-2");
+    }
+}
@@ -0,0 +1,129 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.dto.UserWithBookIdsDto;
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(UserController.class)
+@Import(WebTestConfig.class)
+class UserControllerWireFormatTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private WireFormats wireFormats;
+    @MockBean
+    private UserDataFacade userDataFacade;
+    @MockBean
+    private UserBookBatchProcessor userBookBatchProcessor;
+
+    /**
+     * Request is decoded and response is encoded in the format of Content-Type and Accept headers.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            WebConstant.APPLICATION_SMILE_VALUE})
+    void createdUserIsReadBackInTheSameFormat(String format) throws Exception {
+        MediaType mediaType = MediaType.parseMediaType(format);
+        ObjectMapper mapper = wireFormats.mapperFor(mediaType);
+        UserBookRequest request = newRequest();
+        UserBookResponse user = UserBookResponse.builder()
+                .userId(1L)
+                .booksIdList(List.of(11L, 12L))
+                .nextBooksCursor("AAAAAAAAAAw")
+                .build();
+        when(userDataFacade.createUserWithBooks(request)).thenReturn(user);
+        when(userDataFacade.getUserWithBooksTag(1L)).thenReturn("e-1");
+        when(userDataFacade.getUserWithBooks(1L, "e-1")).thenReturn(user);
+
+        byte[] created = mockMvc.perform(post(WebConstant.VERSION_URL + "/user/create")
+                        .header(WebConstant.RQID, "wire-format-test")
+                        .contentType(mediaType)
+                        .accept(mediaType)
+                        .content(mapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] read = mockMvc.perform(get(WebConstant.VERSION_URL + "/user/get/1")
+                        .accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        verify(userDataFacade).createUserWithBooks(request);
+        assertEquals(user, mapper.readValue(created, UserBookResponse.class));
+        assertEquals(user, mapper.readValue(read, UserBookResponse.class));
+    }
+
+    /**
+     * Every exported user is one line of NDJSON.
+     */
+    @Test
+    void exportIsOneLinePerUser() throws Exception {
+        UserWithBookIdsDto first = new UserWithBookIdsDto();
+        first.setId(1L);
+        first.setFullName("Ann Smith");
+        first.setBooksIdList(List.of(11L, 12L));
+        UserWithBookIdsDto second = new UserWithBookIdsDto();
+        second.setId(2L);
+        second.setFullName("Bob Stone");
+        when(userDataFacade.exportUsersWithBooks(any())).thenAnswer(invocation -> {
+            Consumer<UserWithBookIdsDto> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return 2L;
+        });
+
+        String exported = mockMvc.perform(get(WebConstant.VERSION_URL + "/user/export")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper mapper = wireFormats.mapperFor(MediaType.APPLICATION_NDJSON);
+        List<String> lines = exported.lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals(first, mapper.readValue(lines.get(0), UserWithBookIdsDto.class));
+        assertEquals(second, mapper.readValue(lines.get(1), UserWithBookIdsDto.class));
+    }
+
+    private static UserBookRequest newRequest() {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("Ann Smith");
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+        BookRequest bookRequest = new BookRequest();
+        bookRequest.setTitle("Notes on Java");
+        bookRequest.setAuthor("Bob Stone");
+        bookRequest.setPageCount(320);
+        UserBookRequest request = new UserBookRequest();
+        request.setUserRequest(userRequest);
+        request.setBookRequests(List.of(bookRequest));
+        return request;
+    }
+}
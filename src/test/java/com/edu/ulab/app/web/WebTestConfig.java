@@ -0,0 +1,22 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.config.WireFormatConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Beans of web layer, which are not picked up by WebMvcTest: binary wire formats
+ * and meter registry of exception handler.
+ */
+@TestConfiguration
+@Import({WireFormatConfig.class, WireFormats.class})
+class WebTestConfig {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}